@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.container.Container;
+import org.apache.ofbiz.base.container.ContainerException;
+import org.apache.ofbiz.base.location.FlexibleLocation;
+import org.apache.ofbiz.base.start.StartupCommand;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
+import org.apache.ofbiz.widget.model.FormFactory;
+import org.apache.ofbiz.widget.model.GridFactory;
+import org.apache.ofbiz.widget.model.MenuFactory;
+import org.apache.ofbiz.widget.model.ModelForm;
+import org.apache.ofbiz.widget.model.ScreenFactory;
+import org.apache.ofbiz.widget.model.TreeFactory;
+
+/**
+ * A container that reloads the widget files changed on disk, instead of clearing all the widget caches.
+ * <p>
+ * The files of the screen, form, grid, menu and tree location caches are watched with a <code>WatchService</code>.
+ * When a file changes, only its models are removed from the caches, along with the forms and grids extending
+ * a form of that file, and the cached screen outputs rendering that file. The screens and menus of the file are
+ * read again right away, the other models on their next use. Files in jars and webapp resources are not watched.
+ * Disabled unless <code>widget.reload.enable=true</code> in widget.properties.
+ * </p>
+ */
+public class WidgetReloadContainer implements Container {
+
+    public static final String module = WidgetReloadContainer.class.getName();
+
+    private String name;
+    private WatchService watchService;
+    private Thread watchThread;
+    private long interval;
+    /** The locations read from each watched file. */
+    private final Map<Path, Set<String>> fileLocations = new HashMap<Path, Set<String>>();
+    private final Set<String> knownLocations = new HashSet<String>();
+    private final Set<Path> watchedDirectories = new HashSet<Path>();
+
+    @Override
+    public void init(List<StartupCommand> ofbizCommands, String name, String configFile) throws ContainerException {
+        this.name = name;
+    }
+
+    @Override
+    public boolean start() throws ContainerException {
+        if (!"true".equals(UtilProperties.getPropertyValue("widget", "widget.reload.enable", "false"))) {
+            return true;
+        }
+        interval = (long) UtilProperties.getPropertyNumber("widget", "widget.reload.interval", 1000);
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new ContainerException("Could not create the widget file watch service", e);
+        }
+        watchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchFiles();
+            }
+        }, "widget-reload");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        Debug.logInfo("Watching the widget files for changes", module);
+        return true;
+    }
+
+    @Override
+    public void stop() throws ContainerException {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                Debug.logWarning(e, "Could not close the widget file watch service", module);
+            }
+            watchThread.interrupt();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    private void watchFiles() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                watchLoadedFiles();
+                WatchKey watchKey = watchService.poll(interval, TimeUnit.MILLISECONDS);
+                if (watchKey == null) {
+                    continue;
+                }
+                // editors write a file in several steps: wait for one quiet interval before reloading
+                Set<Path> changedFiles = new HashSet<Path>();
+                while (watchKey != null) {
+                    Path directory = (Path) watchKey.watchable();
+                    for (WatchEvent<?> event : watchKey.pollEvents()) {
+                        if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                            changedFiles.add(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    watchKey.reset();
+                    watchKey = watchService.poll(interval, TimeUnit.MILLISECONDS);
+                }
+                for (Path changedFile : changedFiles) {
+                    Set<String> locations = fileLocations.get(changedFile);
+                    if (locations != null) {
+                        for (String location : locations) {
+                            reload(location);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /** Starts watching the files of the locations loaded since the last call. */
+    private void watchLoadedFiles() {
+        Set<String> locations = new HashSet<String>();
+        locations.addAll(ScreenFactory.screenLocationCache.getCacheLineKeys());
+        locations.addAll(MenuFactory.menuLocationCache.getCacheLineKeys());
+        locations.addAll(TreeFactory.treeLocationCache.getCacheLineKeys());
+        // the form and grid caches are keyed by delegator name and location
+        for (String cacheKey : FormFactory.formLocationCache.getCacheLineKeys()) {
+            locations.add(getLocation(cacheKey));
+        }
+        for (String cacheKey : GridFactory.gridLocationCache.getCacheLineKeys()) {
+            locations.add(getLocation(cacheKey));
+        }
+        for (String cacheKey : GridFactory.gridFormLocationCache.getCacheLineKeys()) {
+            locations.add(getLocation(cacheKey));
+        }
+        locations.removeAll(knownLocations);
+        for (String location : locations) {
+            knownLocations.add(location);
+            Path file = getFile(location);
+            if (file == null) {
+                continue;
+            }
+            Path directory = file.getParent();
+            if (!watchedDirectories.contains(directory)) {
+                try {
+                    directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchedDirectories.add(directory);
+                } catch (IOException e) {
+                    Debug.logWarning("Could not watch the widget directory [" + directory + "]: " + e.toString(), module);
+                    continue;
+                }
+            }
+            Set<String> locationsOfFile = fileLocations.get(file);
+            if (locationsOfFile == null) {
+                locationsOfFile = new HashSet<String>();
+                fileLocations.put(file, locationsOfFile);
+            }
+            locationsOfFile.add(location);
+        }
+    }
+
+    private static String getLocation(String cacheKey) {
+        return cacheKey.substring(cacheKey.indexOf(':') + 1);
+    }
+
+    private static Path getFile(String location) {
+        try {
+            URL fileUrl = FlexibleLocation.resolveLocation(location);
+            if (fileUrl == null || !"file".equals(fileUrl.getProtocol())) {
+                return null;
+            }
+            return Paths.get(fileUrl.toURI());
+        } catch (IOException e) {
+            return null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Removes the models read from <code>location</code> from the widget caches, and reads its screens and menus again.
+     * The cached outputs rendering a screen or form of the file are removed too.
+     */
+    public static void reload(String location) {
+        long startTime = System.currentTimeMillis();
+        try {
+            if (ScreenFactory.screenLocationCache.remove(location) != null) {
+                ScreenFactory.getScreensFromLocation(location);
+            }
+            if (MenuFactory.menuLocationCache.remove(location) != null) {
+                MenuFactory.getMenusFromLocation(location);
+            }
+        } catch (Exception e) {
+            Debug.logError(e, "Could not reload the widget file [" + location + "]", module);
+        }
+        TreeFactory.treeLocationCache.remove(location);
+        WidgetCacheInvalidator.widgetFileChanged(location);
+        int extendingFiles = removeForms(FormFactory.formLocationCache, location);
+        extendingFiles += removeForms(GridFactory.gridLocationCache, location);
+        extendingFiles += removeForms(GridFactory.gridFormLocationCache, location);
+        if (Debug.infoOn()) {
+            double totalSeconds = (System.currentTimeMillis() - startTime) / 1000.0;
+            Debug.logInfo("Reloaded the widget file [" + location + "] in " + totalSeconds + "s, the forms of " + extendingFiles
+                    + " other files extending it will be read again", module);
+        }
+    }
+
+    /**
+     * Removes the forms read from <code>location</code>, and the forms extending a form of <code>location</code>,
+     * from <code>cache</code>. Returns the number of other files removed.
+     */
+    private static <F extends ModelForm> int removeForms(UtilCache<String, Map<String, F>> cache, String location) {
+        int extendingFiles = 0;
+        for (String cacheKey : cache.getCacheLineKeys()) {
+            if (location.equals(getLocation(cacheKey))) {
+                cache.remove(cacheKey);
+                continue;
+            }
+            Map<String, F> modelForms = cache.get(cacheKey);
+            if (modelForms != null && extendsLocation(modelForms, location)) {
+                cache.remove(cacheKey);
+                extendingFiles++;
+            }
+        }
+        return extendingFiles;
+    }
+
+    private static boolean extendsLocation(Map<String, ? extends ModelForm> modelForms, String location) {
+        for (ModelForm modelForm : modelForms.values()) {
+            for (ModelForm parentForm = modelForm.getParentModelForm(); parentForm != null; parentForm = parentForm.getParentModelForm()) {
+                if (location.equals(parentForm.getFormLocation())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
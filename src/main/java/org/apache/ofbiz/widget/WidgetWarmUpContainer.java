@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.ofbiz.base.component.ComponentConfig;
+import org.apache.ofbiz.base.container.Container;
+import org.apache.ofbiz.base.container.ContainerException;
+import org.apache.ofbiz.base.start.StartupCommand;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.DelegatorFactory;
+import org.apache.ofbiz.service.LocalDispatcher;
+import org.apache.ofbiz.service.ServiceContainer;
+import org.apache.ofbiz.widget.model.FormFactory;
+import org.apache.ofbiz.widget.model.GridFactory;
+import org.apache.ofbiz.widget.model.MenuFactory;
+import org.apache.ofbiz.widget.model.ScreenFactory;
+import org.apache.ofbiz.widget.model.TreeFactory;
+
+/**
+ * A container that loads the screen, form, menu and tree models of all the components at startup,
+ * so the first requests don't have to parse them.
+ * <p>
+ * The widget files are the <code>*Screens.xml</code>, <code>*Forms.xml</code>, <code>*Menus.xml</code> and
+ * <code>*Trees.xml</code> files of the <code>widget</code> directory of each enabled component. They are
+ * loaded in parallel; the load time of each file is logged and the files failing to load are reported.
+ * Disabled unless <code>widget.warmup.enable=true</code> in widget.properties.
+ * </p>
+ */
+public class WidgetWarmUpContainer implements Container {
+
+    public static final String module = WidgetWarmUpContainer.class.getName();
+
+    private String name;
+
+    @Override
+    public void init(List<StartupCommand> ofbizCommands, String name, String configFile) throws ContainerException {
+        this.name = name;
+    }
+
+    @Override
+    public boolean start() throws ContainerException {
+        if (!"true".equals(UtilProperties.getPropertyValue("widget", "widget.warmup.enable", "false"))) {
+            return true;
+        }
+        String delegatorName = UtilProperties.getPropertyValue("widget", "widget.warmup.delegator", "default");
+        Delegator delegator = DelegatorFactory.getDelegator(delegatorName);
+        if (delegator == null) {
+            throw new ContainerException("Invalid delegator name [" + delegatorName + "] for the widget warm-up");
+        }
+        LocalDispatcher dispatcher = ServiceContainer.getLocalDispatcher(name, delegator);
+        int threads = (int) UtilProperties.getPropertyNumber("widget", "widget.warmup.threads", 0);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        warmUp(delegator, dispatcher, threads);
+        return true;
+    }
+
+    @Override
+    public void stop() throws ContainerException {
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Loads the widget models of all the components on a pool of <code>threads</code> threads, and returns
+     * the number of widget files that failed to load.
+     */
+    public static int warmUp(final Delegator delegator, final LocalDispatcher dispatcher, int threads) {
+        long startTime = System.currentTimeMillis();
+        List<String> locations = findWidgetLocations();
+        List<Callable<Integer>> loadTasks = new ArrayList<Callable<Integer>>(locations.size());
+        for (final String location : locations) {
+            loadTasks.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return loadWidgets(location, delegator, dispatcher);
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        int failures = 0;
+        int widgetCount = 0;
+        try {
+            List<Future<Integer>> results = pool.invokeAll(loadTasks);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    widgetCount += results.get(i).get();
+                } catch (ExecutionException e) {
+                    failures++;
+                    Debug.logError(e.getCause(), "Could not load the widgets of [" + locations.get(i) + "]", module);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Debug.logWarning("Widget warm-up interrupted", module);
+        } finally {
+            pool.shutdown();
+        }
+        double totalSeconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        Debug.logInfo("Loaded " + widgetCount + " widgets from " + (locations.size() - failures) + " files in " + totalSeconds + "s using "
+                + threads + " threads, " + failures + " files failed to load", module);
+        return failures;
+    }
+
+    private static int loadWidgets(String location, Delegator delegator, LocalDispatcher dispatcher) throws Exception {
+        long startTime = System.currentTimeMillis();
+        int widgetCount;
+        if (location.endsWith("Screens.xml")) {
+            widgetCount = ScreenFactory.getScreensFromLocation(location).size();
+        } else if (location.endsWith("Forms.xml")) {
+            widgetCount = FormFactory.getFormsFromLocation(location, delegator.getModelReader(), dispatcher.getDispatchContext()).size();
+            widgetCount += GridFactory.getGridsFromLocation(location, delegator.getModelReader(), dispatcher.getDispatchContext()).size();
+        } else if (location.endsWith("Menus.xml")) {
+            widgetCount = MenuFactory.getMenusFromLocation(location).size();
+        } else {
+            widgetCount = TreeFactory.getTreesFromLocation(location, delegator, dispatcher).size();
+        }
+        if (Debug.infoOn()) {
+            double totalSeconds = (System.currentTimeMillis() - startTime) / 1000.0;
+            Debug.logInfo("Loaded " + widgetCount + " widgets in " + totalSeconds + "s from: " + location, module);
+        }
+        return widgetCount;
+    }
+
+    /** Returns the locations of the widget files found in the <code>widget</code> directory of the enabled components. */
+    public static List<String> findWidgetLocations() {
+        List<String> locations = new ArrayList<String>();
+        for (ComponentConfig componentConfig : ComponentConfig.getAllComponents()) {
+            if (!componentConfig.enabled()) {
+                continue;
+            }
+            File widgetDirectory = new File(componentConfig.getRootLocation(), "widget");
+            findWidgetLocations(widgetDirectory, "component://" + componentConfig.getComponentName() + "/widget/", locations);
+        }
+        return locations;
+    }
+
+    private static void findWidgetLocations(File directory, String locationPrefix, List<String> locations) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String fileName = file.getName();
+            if (file.isDirectory()) {
+                findWidgetLocations(file, locationPrefix + fileName + "/", locations);
+            } else if (fileName.endsWith("Screens.xml") || fileName.endsWith("Forms.xml") || fileName.endsWith("Menus.xml")
+                    || fileName.endsWith("Trees.xml")) {
+                locations.add(locationPrefix + fileName);
+            }
+        }
+    }
+}
@@ -294,10 +294,12 @@ public final class ArtifactInfoGatherer implements ModelWidgetVisitor, ModelActi
 
     @Override
     public void visit(ModelTreeAction.EntityAnd entityAnd) throws Exception {
+        infoContext.addEntityName(entityAnd.getFinder().getEntityName());
     }
 
     @Override
     public void visit(ModelTreeAction.EntityCondition entityCondition) throws Exception {
+        infoContext.addEntityName(entityCondition.getFinder().getEntityName());
     }
 
     @Override
@@ -49,7 +49,11 @@ public abstract class AbstractCache {
     }
 
     protected UtilCache<WidgetContextCacheKey, GenericWidgetOutput> getOrCreateCache(String widgetName) {
+        return getOrCreateCache(widgetName, WidgetCachePolicy.UNBOUNDED);
+    }
+
+    protected UtilCache<WidgetContextCacheKey, GenericWidgetOutput> getOrCreateCache(String widgetName, WidgetCachePolicy policy) {
         String name = getCacheName(widgetName);
-        return UtilCache.getOrCreateUtilCache(name, 0, 0, 0, true, name);
+        return UtilCache.getOrCreateUtilCache(name, policy.getMaxEntries(), policy.getMaxEntries(), policy.getExpireTime(), true, name);
     }
 }
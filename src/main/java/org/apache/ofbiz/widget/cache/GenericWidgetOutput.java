@@ -28,6 +28,11 @@ public class GenericWidgetOutput {
         this.output = output;
     }
 
+    /** Returns the estimated heap size of the output: two bytes per character. */
+    public long getByteSize() {
+        return 2L * this.output.length();
+    }
+
     @Override
     public String toString() {
         return this.output;
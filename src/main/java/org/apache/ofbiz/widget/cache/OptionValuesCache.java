@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.cache;
+
+import java.util.List;
+
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.apache.ofbiz.widget.model.ModelFormField.OptionValue;
+
+/**
+ * Cache of the drop-down option values read by the <code>entity-options</code> of the forms, one
+ * <code>UtilCache</code> per entity.
+ * <p>
+ * The option values of an entity are removed by {@link WidgetCacheInvalidator} when a value of that entity
+ * changes. Each entity cache keeps at most <code>widget.cache.optionValues.maxEntries</code> option lists,
+ * the least recently used are removed first, for <code>widget.cache.optionValues.expireTime</code> milliseconds:
+ * the changes not seen by the invalidator (like a <code>storeByCondition</code>, or a change made by another
+ * server) are seen once the lists expire.
+ * </p>
+ */
+public class OptionValuesCache extends AbstractCache {
+    public static final String module = OptionValuesCache.class.getName();
+
+    public OptionValuesCache() {
+        super("optionValues");
+    }
+
+    public List<OptionValue> get(String entityName, Object key) {
+        UtilCache<Object, List<OptionValue>> optionValuesCache = getCache(entityName);
+        if (optionValuesCache == null) {
+            return null;
+        }
+        return optionValuesCache.get(key);
+    }
+
+    public void put(String entityName, Object key, List<OptionValue> optionValues) {
+        String name = getCacheName(entityName);
+        int maxEntries = UtilProperties.getPropertyAsInteger("widget", "widget.cache.optionValues.maxEntries", 200);
+        long expireTime = UtilProperties.getPropertyAsLong("widget", "widget.cache.optionValues.expireTime", 3600000);
+        UtilCache<Object, List<OptionValue>> optionValuesCache = UtilCache.getOrCreateUtilCache(name, maxEntries, maxEntries, expireTime, true, name);
+        optionValuesCache.put(key, optionValues);
+    }
+
+    public void remove(String entityName, Object key) {
+        UtilCache<Object, List<OptionValue>> optionValuesCache = getCache(entityName);
+        if (optionValuesCache != null) {
+            optionValuesCache.remove(key);
+        }
+    }
+}
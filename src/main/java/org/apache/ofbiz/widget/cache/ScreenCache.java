@@ -18,12 +18,35 @@
  *******************************************************************************/
 package org.apache.ofbiz.widget.cache;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.cache.CacheListener;
 import org.apache.ofbiz.base.util.cache.UtilCache;
 
+/**
+ * Cache of rendered screen outputs, one <code>UtilCache</code> per screen.
+ * <p>
+ * The <code>UtilCache</code> of a screen enforces its <code>cache-max-entries</code> and
+ * <code>cache-expire-time</code> limits and keeps the outputs with soft references. Besides, the byte size of the
+ * cached outputs is tracked for each screen by a listener of its <code>UtilCache</code>, so the outputs evicted,
+ * expired, collected or cleared by the <code>UtilCache</code> are dropped from the byte sizes as they go. When a
+ * screen goes over its <code>cache-max-bytes</code> limit its least recently used outputs are removed, and when all
+ * the screens go over the <code>widget.cache.screen.maxBytes</code> limit of widget.properties the least recently
+ * used outputs of the largest screen cache are removed.
+ * </p>
+ */
 public class ScreenCache extends AbstractCache {
     public static final String module = ScreenCache.class.getName();
 
+    private static final ConcurrentMap<String, ByteSizes> byteSizesByCache = new ConcurrentHashMap<String, ByteSizes>();
+    private static final AtomicLong totalByteSize = new AtomicLong();
+
     public ScreenCache() {
         super("screen");
     }
@@ -31,12 +54,36 @@ public class ScreenCache extends AbstractCache {
     public GenericWidgetOutput get(String screenName, WidgetContextCacheKey wcck) {
         UtilCache<WidgetContextCacheKey,GenericWidgetOutput> screenCache = getCache(screenName);
         if (screenCache == null) return null;
-        return screenCache.get(wcck);
+        GenericWidgetOutput output = screenCache.get(wcck);
+        if (output != null) {
+            ByteSizes byteSizes = byteSizesByCache.get(screenCache.getName());
+            if (byteSizes != null) {
+                byteSizes.touch(wcck);
+            }
+        }
+        return output;
     }
 
     public GenericWidgetOutput put(String screenName, WidgetContextCacheKey wcck, GenericWidgetOutput output) {
-        UtilCache<WidgetContextCacheKey, GenericWidgetOutput> screenCache = getOrCreateCache(screenName);
-        return screenCache.put(wcck, output);
+        return put(screenName, wcck, output, WidgetCachePolicy.UNBOUNDED);
+    }
+
+    public GenericWidgetOutput put(String screenName, WidgetContextCacheKey wcck, GenericWidgetOutput output, WidgetCachePolicy policy) {
+        UtilCache<WidgetContextCacheKey, GenericWidgetOutput> screenCache = getOrCreateCache(screenName, policy);
+        GenericWidgetOutput retVal = screenCache.put(wcck, output);
+        ByteSizes byteSizes = byteSizesByCache.get(screenCache.getName());
+        if (policy.getMaxBytes() > 0) {
+            while (byteSizes.getByteSize() > policy.getMaxBytes() && byteSizes.removeEldest()) {
+            }
+        }
+        long maxTotalBytes = UtilProperties.getPropertyAsLong("widget", "widget.cache.screen.maxBytes", 0);
+        while (maxTotalBytes > 0 && totalByteSize.get() > maxTotalBytes) {
+            ByteSizes largest = getLargestByteSizes();
+            if (largest == null || !largest.removeEldest()) {
+                break;
+            }
+        }
+        return retVal;
     }
 
     public GenericWidgetOutput remove(String screenName, WidgetContextCacheKey wcck) {
@@ -47,4 +94,121 @@ public class ScreenCache extends AbstractCache {
         if (Debug.verboseOn()) Debug.logVerbose("Removing from ScreenCache with key [" + wcck + "], found this in the cache: " + retVal, module);
         return retVal;
     }
+
+    /**
+     * Removes the cached outputs of the screens and screen fragments of the file at <code>location</code>, and those
+     * naming a screen of that file: the included screens and the screens supplying a decorator section.
+     */
+    public void removeLocation(String location) {
+        String cacheNamePrefix = getCacheNamePrefix();
+        for (String cacheName : UtilCache.getUtilCacheTableKeySet()) {
+            if (!cacheName.startsWith(cacheNamePrefix)) {
+                continue;
+            }
+            String widgetName = cacheName.substring(cacheNamePrefix.length());
+            if (widgetName.contains(location + ":") || widgetName.contains(location + "#")) {
+                UtilCache.clearCache(cacheName);
+            }
+        }
+    }
+
+    @Override
+    protected UtilCache<WidgetContextCacheKey, GenericWidgetOutput> getOrCreateCache(String widgetName, WidgetCachePolicy policy) {
+        UtilCache<WidgetContextCacheKey, GenericWidgetOutput> screenCache = super.getOrCreateCache(widgetName, policy);
+        if (!byteSizesByCache.containsKey(screenCache.getName())) {
+            ByteSizes byteSizes = new ByteSizes(screenCache);
+            if (byteSizesByCache.putIfAbsent(screenCache.getName(), byteSizes) == null) {
+                screenCache.addListener(byteSizes);
+            }
+        }
+        return screenCache;
+    }
+
+    /** Returns the total byte size of the cached screen outputs. */
+    public static long getTotalByteSize() {
+        return totalByteSize.get();
+    }
+
+    private static ByteSizes getLargestByteSizes() {
+        ByteSizes largest = null;
+        for (ByteSizes byteSizes : byteSizesByCache.values()) {
+            if (byteSizes.getByteSize() > 0 && (largest == null || byteSizes.getByteSize() > largest.getByteSize())) {
+                largest = byteSizes;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Byte sizes of the outputs of a screen cache, least recently used first, kept up to date by the
+     * notifications of the <code>UtilCache</code>.
+     */
+    private static final class ByteSizes implements CacheListener<WidgetContextCacheKey, GenericWidgetOutput> {
+        private final UtilCache<WidgetContextCacheKey, GenericWidgetOutput> screenCache;
+        /** Guarded by this. */
+        private final LinkedHashMap<WidgetContextCacheKey, Long> entries = new LinkedHashMap<WidgetContextCacheKey, Long>(16, 0.75f, true);
+        private volatile long byteSize = 0;
+
+        private ByteSizes(UtilCache<WidgetContextCacheKey, GenericWidgetOutput> screenCache) {
+            this.screenCache = screenCache;
+        }
+
+        private long getByteSize() {
+            return byteSize;
+        }
+
+        private synchronized void touch(WidgetContextCacheKey key) {
+            entries.get(key);
+        }
+
+        /** Removes the least recently used output from the <code>UtilCache</code>, returns <code>false</code> if there is none. */
+        private boolean removeEldest() {
+            WidgetContextCacheKey eldestKey;
+            synchronized (this) {
+                Iterator<WidgetContextCacheKey> keyIter = entries.keySet().iterator();
+                if (!keyIter.hasNext()) {
+                    return false;
+                }
+                eldestKey = keyIter.next();
+            }
+            // the removal notification drops the byte size, a key already gone is only dropped from the sizes
+            if (screenCache.remove(eldestKey) == null) {
+                removeSize(eldestKey);
+            }
+            return true;
+        }
+
+        private synchronized void putSize(WidgetContextCacheKey key, GenericWidgetOutput output) {
+            long newByteSize = output == null ? 0 : output.getByteSize();
+            Long oldByteSize = entries.put(key, newByteSize);
+            addByteSize(newByteSize - (oldByteSize == null ? 0 : oldByteSize));
+        }
+
+        private synchronized void removeSize(WidgetContextCacheKey key) {
+            Long oldByteSize = entries.remove(key);
+            if (oldByteSize != null) {
+                addByteSize(-oldByteSize);
+            }
+        }
+
+        private void addByteSize(long delta) {
+            byteSize += delta;
+            totalByteSize.addAndGet(delta);
+        }
+
+        @Override
+        public void noteKeyRemoval(UtilCache<WidgetContextCacheKey, GenericWidgetOutput> cache, WidgetContextCacheKey key, GenericWidgetOutput oldValue) {
+            removeSize(key);
+        }
+
+        @Override
+        public void noteKeyAddition(UtilCache<WidgetContextCacheKey, GenericWidgetOutput> cache, WidgetContextCacheKey key, GenericWidgetOutput newValue) {
+            putSize(key, newValue);
+        }
+
+        @Override
+        public void noteKeyUpdate(UtilCache<WidgetContextCacheKey, GenericWidgetOutput> cache, WidgetContextCacheKey key, GenericWidgetOutput newValue, GenericWidgetOutput oldValue) {
+            putSize(key, newValue);
+        }
+    }
 }
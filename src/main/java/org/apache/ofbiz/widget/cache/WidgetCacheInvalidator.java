@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntity;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.eca.EntityEcaHandler;
+import org.apache.ofbiz.entity.transaction.TransactionFactoryLoader;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.widget.artifact.ArtifactInfoContext;
+import org.apache.ofbiz.widget.artifact.ArtifactInfoGatherer;
+import org.apache.ofbiz.widget.model.ModelForm;
+import org.apache.ofbiz.widget.model.ModelScreen;
+import org.apache.ofbiz.widget.model.ModelScreenWidget;
+import org.apache.ofbiz.widget.model.ModelWidget;
+
+/**
+ * Removes the cached outputs of the screens and screen fragments depending on an entity when a value
+ * of that entity is created, stored or removed. The option values read from that entity by the forms
+ * are removed too, see {@link OptionValuesCache}.
+ * <p>
+ * While a cached output is rendered, the entities it reads are recorded: the entities declared by the
+ * screens and forms it renders (as found by {@link ArtifactInfoGatherer}), and the entities actually
+ * queried through the delegator. Entity changes are caught by wrapping the delegator
+ * <code>EntityEcaHandler</code>, see {@link #register(Delegator)}. Only the changes of the entities
+ * a cached value depends on are noted, and all the changes while an output is being recorded.
+ * </p>
+ * <p>
+ * Dependencies are tracked per widget: a change removes all the cached outputs of the widgets reading
+ * the changed entity. The files of the screens and forms rendered are tracked the same way, so a
+ * reloaded file removes the outputs rendering it. The <code>storeByCondition</code> and <code>removeByCondition</code> delegator
+ * operations do not run the entity ECA rules and are not seen.
+ * </p>
+ * <p>
+ * A change done in a transaction removes the outputs when the transaction commits, and not at all if it
+ * rolls back. An output is cached only if none of the entities it read changed since its rendering
+ * started, nor were changed by the current transaction: see {@link #getChangeStamp()} and
+ * {@link #isChangedSince(Collection, long)}.
+ * </p>
+ */
+public final class WidgetCacheInvalidator {
+
+    public static final String module = WidgetCacheInvalidator.class.getName();
+
+    /** Prefix of the widget file locations recorded along with the entity names, see {@link #widgetFileChanged(String)}. */
+    private static final String WIDGET_FILE_PREFIX = "file:";
+    /** The entity names read by the outputs being rendered by the current thread, innermost last. */
+    private static final ThreadLocal<LinkedList<Set<String>>> recordings = new ThreadLocal<LinkedList<Set<String>>>() {
+        @Override
+        protected LinkedList<Set<String>> initialValue() {
+            return new LinkedList<Set<String>>();
+        }
+    };
+    /** The entity names declared by a screen or form, keyed by the model (weakly, models are replaced when reloaded). */
+    private static final Map<ModelWidget, Set<String>> declaredEntityNames = Collections.synchronizedMap(new WeakHashMap<ModelWidget, Set<String>>());
+    private static final ConcurrentMap<String, Set<String>> widgetNamesByEntity = new ConcurrentHashMap<String, Set<String>>();
+    private static final ConcurrentMap<String, Set<String>> entityNamesByWidget = new ConcurrentHashMap<String, Set<String>>();
+    private static final Set<String> registeredDelegators = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private static final Set<String> unregisteredDelegators = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /** The entity names read by a cached output or option values: only their changes are noted, besides those seen while recording. */
+    private static final Set<String> watchedEntityNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /** The number of recordings running in all threads: while there is one, every change is noted. */
+    private static final AtomicInteger runningRecordings = new AtomicInteger();
+    private static final AtomicLong changeCount = new AtomicLong();
+    /** The value of changeCount when each entity last changed. */
+    private static final ConcurrentMap<String, Long> entityChangeStamps = new ConcurrentHashMap<String, Long>();
+    /** The entity names changed by each running transaction, removed when it completes. */
+    private static final ConcurrentMap<Transaction, Set<String>> transactionChanges = new ConcurrentHashMap<Transaction, Set<String>>();
+
+    private WidgetCacheInvalidator() {
+    }
+
+    /**
+     * Makes the changes of the entity values done through <code>delegator</code> remove the cached outputs
+     * depending on them, called before a widget output or option values are first cached. Does nothing if it has
+     * already been done for this delegator.
+     * <p>
+     * The delegator <code>EntityEcaHandler</code> is wrapped only once it is set: a delegator only creates its
+     * handler if it has none (see <code>Delegator.initEntityEcaHandler()</code>), and the wrapper would prevent it.
+     * Until then the changes are not seen, and the cached outputs are only removed by their expire time.
+     * </p>
+     */
+    public static void register(Delegator delegator) {
+        if (delegator == null || registeredDelegators.contains(delegator.getDelegatorName())) {
+            return;
+        }
+        // the delegator creates its handler while synchronized on itself
+        synchronized (delegator) {
+            EntityEcaHandler<Object> ecaHandler = delegator.getEntityEcaHandler();
+            if (ecaHandler == null) {
+                if (unregisteredDelegators.add(delegator.getDelegatorName())) {
+                    Debug.logWarning("Delegator [" + delegator.getDelegatorName() + "] has no entity ECA handler yet, its changes will not remove the cached widget outputs until it has one", module);
+                }
+                return;
+            }
+            if (!(ecaHandler instanceof InvalidatingEcaHandler)) {
+                delegator.setEntityEcaHandler(new InvalidatingEcaHandler<Object>(ecaHandler));
+            }
+            registeredDelegators.add(delegator.getDelegatorName());
+        }
+    }
+
+    /**
+     * Makes the changes of <code>entityName</code> remove the values read from it from now on, to be called before
+     * reading values to cache outside of a recording.
+     */
+    public static void watch(String entityName) {
+        watchedEntityNames.add(entityName);
+    }
+
+    /** Starts recording the entities read by the current thread, must be followed by {@link #stopRecording()}. */
+    public static void startRecording() {
+        runningRecordings.incrementAndGet();
+        recordings.get().addLast(new HashSet<String>());
+    }
+
+    /** Stops the innermost recording of the current thread and returns the entity names it found. */
+    public static Set<String> stopRecording() {
+        runningRecordings.decrementAndGet();
+        return recordings.get().removeLast();
+    }
+
+    /** Returns <code>true</code> if the current thread is recording the entities read by a cached output. */
+    public static boolean isRecording() {
+        return !recordings.get().isEmpty();
+    }
+
+    private static void recordEntityNames(Collection<String> entityNames) {
+        for (Set<String> recording : recordings.get()) {
+            recording.addAll(entityNames);
+        }
+    }
+
+    /**
+     * Records the entities declared by <code>widget</code> (a screen, a form or a screen fragment) if a recording is running,
+     * and the files it is read from.
+     */
+    public static void recordWidget(ModelWidget widget) {
+        if (!isRecording()) {
+            return;
+        }
+        Set<String> entityNames = declaredEntityNames.get(widget);
+        if (entityNames == null) {
+            ArtifactInfoContext infoContext = new ArtifactInfoContext();
+            try {
+                widget.accept(new ArtifactInfoGatherer(infoContext));
+            } catch (Exception e) {
+                Debug.logWarning(e, "Could not gather the entities read by widget [" + widget.getName() + "], its cached outputs may not be removed when they change", module);
+            }
+            entityNames = new HashSet<String>(infoContext.getEntityNames());
+            if (widget instanceof ModelScreen) {
+                entityNames.add(WIDGET_FILE_PREFIX + ((ModelScreen) widget).getSourceLocation());
+            } else if (widget instanceof ModelScreenWidget) {
+                entityNames.add(WIDGET_FILE_PREFIX + ((ModelScreenWidget) widget).getModelScreen().getSourceLocation());
+            } else if (widget instanceof ModelForm) {
+                for (ModelForm modelForm = (ModelForm) widget; modelForm != null; modelForm = modelForm.getParentModelForm()) {
+                    entityNames.add(WIDGET_FILE_PREFIX + modelForm.getFormLocation());
+                }
+            }
+            entityNames = Collections.unmodifiableSet(entityNames);
+            declaredEntityNames.put(widget, entityNames);
+        }
+        recordEntityNames(entityNames);
+    }
+
+    /**
+     * Records the entities read by the cached outputs of <code>widgetName</code>, to be called when one of them
+     * is written instead of being rendered.
+     */
+    public static void recordCachedWidget(String widgetName) {
+        if (!isRecording()) {
+            return;
+        }
+        Set<String> entityNames = entityNamesByWidget.get(widgetName);
+        if (entityNames != null) {
+            recordEntityNames(entityNames);
+        }
+    }
+
+    /** Declares that the cached outputs of <code>widgetName</code> must be removed when one of <code>entityNames</code> changes. */
+    public static void addDependencies(String widgetName, Set<String> entityNames) {
+        Set<String> widgetEntityNames = getOrCreateSet(entityNamesByWidget, widgetName);
+        for (String entityName : entityNames) {
+            watchedEntityNames.add(entityName);
+            if (widgetEntityNames.add(entityName)) {
+                getOrCreateSet(widgetNamesByEntity, entityName).add(widgetName);
+            }
+        }
+    }
+
+    /** Returns the names of the entities the cached outputs of <code>widgetName</code> depend on. */
+    public static Set<String> getDependencies(String widgetName) {
+        Set<String> entityNames = entityNamesByWidget.get(widgetName);
+        if (entityNames == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(entityNames);
+    }
+
+    private static Set<String> getOrCreateSet(ConcurrentMap<String, Set<String>> map, String key) {
+        Set<String> set = map.get(key);
+        if (set == null) {
+            set = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            Set<String> existing = map.putIfAbsent(key, set);
+            if (existing != null) {
+                set = existing;
+            }
+        }
+        return set;
+    }
+
+    /** Returns the change stamp to pass to {@link #isChangedSince(Collection, long)}, taken before rendering an output. */
+    public static long getChangeStamp() {
+        return changeCount.get();
+    }
+
+    /**
+     * Returns <code>true</code> if one of <code>entityNames</code> changed since <code>changeStamp</code> was taken, or was
+     * changed by the current transaction and not committed yet: an output reading them must not be cached. To be called
+     * once the output is cached and its dependencies added, the output is removed if it returns <code>true</code>.
+     */
+    public static boolean isChangedSince(Collection<String> entityNames, long changeStamp) {
+        for (String entityName : entityNames) {
+            Long entityChangeStamp = entityChangeStamps.get(entityName);
+            if (entityChangeStamp != null && entityChangeStamp > changeStamp) {
+                return true;
+            }
+        }
+        Transaction transaction = getCurrentTransaction();
+        if (transaction != null) {
+            Set<String> changedEntityNames = transactionChanges.get(transaction);
+            if (changedEntityNames != null && !Collections.disjoint(changedEntityNames, entityNames)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Transaction getCurrentTransaction() {
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                return TransactionFactoryLoader.getInstance().getTransactionManager().getTransaction();
+            }
+        } catch (GenericEntityException e) {
+            Debug.logWarning(e, "Could not get the current transaction", module);
+        } catch (SystemException e) {
+            Debug.logWarning(e, "Could not get the current transaction", module);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the cached outputs depending on <code>entityName</code> when the current transaction commits,
+     * or right away when there is no transaction.
+     */
+    private static void noteEntityChange(String entityName) {
+        Transaction transaction = getCurrentTransaction();
+        if (transaction != null) {
+            Set<String> changedEntityNames = transactionChanges.get(transaction);
+            if (changedEntityNames == null) {
+                changedEntityNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                Set<String> existing = transactionChanges.putIfAbsent(transaction, changedEntityNames);
+                if (existing != null) {
+                    changedEntityNames = existing;
+                } else {
+                    try {
+                        TransactionUtil.registerSynchronization(new CommitSynchronization(transaction));
+                    } catch (GenericEntityException e) {
+                        Debug.logWarning(e, "Could not wait for the commit of the transaction changing [" + entityName
+                                + "], removing the cached outputs reading it now", module);
+                        transactionChanges.remove(transaction);
+                        entityChanged(entityName);
+                        return;
+                    }
+                }
+            }
+            changedEntityNames.add(entityName);
+        } else {
+            entityChanged(entityName);
+        }
+    }
+
+    /** Removes the cached outputs of the widgets depending on <code>entityName</code>, and the option values read from it. */
+    public static void entityChanged(String entityName) {
+        // stamped first: an output read before and cached after the removal is then removed by its renderer
+        entityChangeStamps.put(entityName, changeCount.incrementAndGet());
+        new OptionValuesCache().remove(entityName);
+        Set<String> widgetNames = widgetNamesByEntity.get(entityName);
+        if (widgetNames == null || widgetNames.isEmpty()) {
+            return;
+        }
+        ScreenCache screenCache = new ScreenCache();
+        for (String widgetName : widgetNames) {
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Entity [" + entityName + "] changed, removing the cached outputs of [" + widgetName + "]", module);
+            }
+            screenCache.remove(widgetName);
+        }
+    }
+
+    /**
+     * Removes the cached outputs of the widgets rendering a screen or form of the file at <code>location</code>,
+     * to be called when the file is reloaded. The outputs supplied a decorator section by a screen of the file are
+     * removed too, see {@link ScreenCache#removeLocation(String)}.
+     */
+    public static void widgetFileChanged(String location) {
+        ScreenCache screenCache = new ScreenCache();
+        Set<String> widgetNames = widgetNamesByEntity.get(WIDGET_FILE_PREFIX + location);
+        if (widgetNames != null) {
+            for (String widgetName : widgetNames) {
+                screenCache.remove(widgetName);
+            }
+        }
+        screenCache.removeLocation(location);
+    }
+
+    /**
+     * Wraps the <code>EntityEcaHandler</code> of a delegator - if any - to record the entities found while
+     * a cached output is rendered and to remove the cached outputs reading an entity when it changes.
+     */
+    private static final class InvalidatingEcaHandler<T> implements EntityEcaHandler<T> {
+
+        private final EntityEcaHandler<T> ecaHandler;
+
+        private InvalidatingEcaHandler(EntityEcaHandler<T> ecaHandler) {
+            this.ecaHandler = ecaHandler;
+        }
+
+        @Override
+        public void setDelegator(Delegator delegator) {
+            if (ecaHandler != null) {
+                ecaHandler.setDelegator(delegator);
+            }
+        }
+
+        @Override
+        public Map<String, List<T>> getEntityEventMap(String entityName) {
+            return ecaHandler != null ? ecaHandler.getEntityEventMap(entityName) : null;
+        }
+
+        @Override
+        public void evalRules(String currentOperation, Map<String, List<T>> eventMap, String event, GenericEntity value, boolean isError) throws GenericEntityException {
+            if (ecaHandler != null) {
+                ecaHandler.evalRules(currentOperation, eventMap, event, value, isError);
+            }
+            if (value == null || isError) {
+                return;
+            }
+            if (EntityEcaHandler.OP_FIND.equals(currentOperation)) {
+                if (isRecording()) {
+                    recordEntityNames(Collections.singleton(value.getEntityName()));
+                }
+            } else if (EntityEcaHandler.EV_RETURN.equals(event)
+                    && (runningRecordings.get() > 0 || watchedEntityNames.contains(value.getEntityName()))) {
+                // the changes no cached value depends on, nor may depend on, cost no transaction lookup
+                noteEntityChange(value.getEntityName());
+            }
+        }
+    }
+
+    /** Removes the cached outputs depending on the entities changed by a transaction once it is committed. */
+    private static final class CommitSynchronization implements Synchronization {
+
+        private final Transaction transaction;
+
+        private CommitSynchronization(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            Set<String> changedEntityNames = transactionChanges.remove(transaction);
+            if (status == Status.STATUS_COMMITTED && changedEntityNames != null) {
+                for (String entityName : changedEntityNames) {
+                    entityChanged(entityName);
+                }
+            }
+        }
+    }
+}
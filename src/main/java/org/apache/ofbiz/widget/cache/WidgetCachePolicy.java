@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.cache;
+
+import java.io.Serializable;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.w3c.dom.Element;
+
+/**
+ * Limits of a widget output cache, read from the <code>cache-max-entries</code>,
+ * <code>cache-expire-time</code> and <code>cache-max-bytes</code> attributes of a widget element.
+ * A value of 0 means no limit.
+ */
+public final class WidgetCachePolicy implements Serializable {
+
+    public static final String module = WidgetCachePolicy.class.getName();
+    public static final WidgetCachePolicy UNBOUNDED = new WidgetCachePolicy(0, 0, 0);
+
+    private final int maxEntries;
+    private final long expireTime;
+    private final long maxBytes;
+
+    public WidgetCachePolicy(int maxEntries, long expireTime, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.expireTime = expireTime;
+        this.maxBytes = maxBytes;
+    }
+
+    public static WidgetCachePolicy fromElement(Element element) {
+        int maxEntries = (int) parseLimit(element, "cache-max-entries");
+        long expireTime = parseLimit(element, "cache-expire-time");
+        long maxBytes = parseLimit(element, "cache-max-bytes");
+        if (maxEntries == 0 && expireTime == 0 && maxBytes == 0) {
+            return UNBOUNDED;
+        }
+        return new WidgetCachePolicy(maxEntries, expireTime, maxBytes);
+    }
+
+    private static long parseLimit(Element element, String attributeName) {
+        String value = element.getAttribute(attributeName);
+        if (value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            Debug.logError(e, "Invalid " + attributeName + " value [" + value + "] for widget [" + element.getAttribute("name") + "], no limit will be used", module);
+            return 0;
+        }
+    }
+
+    /** Returns the maximum number of cached outputs, least recently used outputs are removed first. */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /** Returns the time in milliseconds after which a cached output expires. */
+    public long getExpireTime() {
+        return expireTime;
+    }
+
+    /** Returns the maximum total size in bytes of the cached outputs. */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
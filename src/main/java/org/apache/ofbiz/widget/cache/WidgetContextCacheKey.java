@@ -19,15 +19,21 @@
 package org.apache.ofbiz.widget.cache;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
-import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.collections.FlexibleMapAccessor;
 
+/**
+ * Cache key of a rendered widget: the relevant entries of the rendering context and of its
+ * <code>parameters</code> map - or only the fields declared in the screen <code>cache-key</code>
+ * attribute - sorted by name, with a hash computed once when the key is created.
+ */
 public final class WidgetContextCacheKey {
 
     public static final String module = WidgetContextCacheKey.class.getName();
@@ -78,113 +84,124 @@ public final class WidgetContextCacheKey {
         return Collections.unmodifiableSet(fieldNamesToSkip);
     }
 
-    private final Map<String, Object> context;
+    private final Map<String, Object> fields;
+    private final Map<String, Object> parameters;
+    private final long hash;
 
     public WidgetContextCacheKey(Map<String, ? extends Object> context) {
-        this.context = Collections.unmodifiableMap(new HashMap<String, Object>(context));
+        Map<String, Object> parameters = null;
+        Map<String, Object> fields = new TreeMap<String, Object>();
+        for (Map.Entry<String, ? extends Object> entry : context.entrySet()) {
+            String fieldName = entry.getKey();
+            if (entry.getValue() == null || isSkipped(fieldName)) {
+                continue;
+            }
+            if ("parameters".equals(fieldName)) {
+                parameters = relevantEntries(UtilGenerics.<String, Object>checkMap(entry.getValue()));
+            } else {
+                fields.put(fieldName, entry.getValue());
+            }
+        }
+        this.fields = Collections.unmodifiableMap(fields);
+        this.parameters = parameters == null ? null : Collections.unmodifiableMap(parameters);
+        this.hash = computeHash();
+    }
+
+    /**
+     * Creates a key made of the values of <code>keyFields</code> only, as declared in
+     * the <code>cache-key</code> attribute of a screen.
+     */
+    public WidgetContextCacheKey(List<FlexibleMapAccessor<Object>> keyFields, Map<String, ? extends Object> context) {
+        Map<String, Object> fields = new TreeMap<String, Object>();
+        Map<String, Object> contextMap = UtilGenerics.checkMap(context);
+        for (FlexibleMapAccessor<Object> keyField : keyFields) {
+            Object value = keyField.get(contextMap);
+            if (value != null) {
+                fields.put(keyField.getOriginalName(), value);
+            }
+        }
+        this.fields = Collections.unmodifiableMap(fields);
+        this.parameters = null;
+        this.hash = computeHash();
+    }
+
+    private long computeHash() {
+        long hash = fingerprint(1125899906842597L, this.fields);
+        if (this.parameters != null) {
+            hash = fingerprint(hash * 31 + "parameters".hashCode(), this.parameters);
+        }
+        return hash;
+    }
+
+    private static boolean isSkipped(String fieldName) {
+        return fieldNamesToSkip.contains(fieldName)
+                || fieldName.startsWith("javax.servlet")
+                || fieldName.startsWith("org.apache")
+                || fieldName.startsWith("_CLIENT_");
+    }
+
+    /** Returns the entries of <code>map</code> taking part in the key, sorted by name. */
+    private static Map<String, Object> relevantEntries(Map<String, ? extends Object> map) {
+        Map<String, Object> entries = new TreeMap<String, Object>();
+        for (Map.Entry<String, ? extends Object> entry : map.entrySet()) {
+            if (entry.getValue() != null && !isSkipped(entry.getKey())) {
+                entries.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return entries;
+    }
+
+    /** Folds the (sorted) entries of <code>map</code> into a 64-bit hash. */
+    private static long fingerprint(long hash, Map<String, Object> map) {
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            hash = hash * 31 + entry.getKey().hashCode();
+            hash = hash * 31 + entry.getValue().hashCode();
+        }
+        // spread the bits so that the int hash code uses the whole 64 bits
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+
+    /** Returns the 64-bit hash of this key. */
+    public long longHashCode() {
+        return hash;
     }
 
     @Override
     public int hashCode() {
-        return 0;
+        return (int) (hash ^ (hash >>> 32));
     }
 
     @Override
     public boolean equals(Object obj) {
-        WidgetContextCacheKey key = null;
-        if (obj instanceof WidgetContextCacheKey) {
-            key = (WidgetContextCacheKey)obj;
+        if (this == obj) {
+            return true;
         }
-        if (key == null || key.context == null) {
-            return this.context == null;
+        if (!(obj instanceof WidgetContextCacheKey)) {
+            return false;
         }
-        if (this.context == null) {
+        WidgetContextCacheKey key = (WidgetContextCacheKey) obj;
+        if (this.hash != key.hash) {
             return false;
         }
-
-        Set<String> unifiedContext = new HashSet<String>();
-        unifiedContext.addAll(this.context.keySet());
-        unifiedContext.addAll(key.context.keySet());
-        for (String fieldName: unifiedContext) {
-            if (fieldNamesToSkip.contains(fieldName)) {
-                continue;
-            }
-            Object field1 = this.context.get(fieldName);
-            Object field2 = key.context.get(fieldName);
-            if (field1 == null && field2 == null) {
-                continue;
-            }
-            if ((field1 == null || field2 == null) && field1 != field2) {
-                Debug.logWarning("Screen Key doesn't match for :" + fieldName + "; value1 = " + field1 + "; value2 = " + field2, module);
-                return false;
-            }
-            if ("parameters".equals(fieldName)) {
-                if (!parametersAreEqual(UtilGenerics.<String, Object>checkMap(field1), UtilGenerics.<String, Object>checkMap(field2))) {
-                    return false;
-                }
-                continue;
-            }
-            if (!field1.equals(field2)) {
-                Debug.logWarning("Screen Key doesn't match for :" + fieldName + "; value1 = " + field1 + "; value2 = " + field2, module);
-                return false;
-            }
+        if (this.parameters == null ? key.parameters != null : !this.parameters.equals(key.parameters)) {
+            return false;
         }
-        return true;
+        return this.fields.equals(key.fields);
     }
 
     @Override
     public String toString() {
-        Map<String, Object> printableMap = new HashMap<String, Object>();
-        for (String fieldName: this.context.keySet()) {
-            if (!fieldNamesToSkip.contains(fieldName) && !"parameters".equals(fieldName)) {
-                printableMap.put(fieldName, this.context.get(fieldName));
-            }
-        }
-        Map<String, Object> parameters = UtilGenerics.checkMap(this.context.get("parameters"));
-        return printMap(printableMap) + "\n" + printMap(parameters);
+        return UtilMisc.printMap(fields) + "\n" + (parameters == null ? "{}" : UtilMisc.printMap(parameters));
     }
 
     public static String printMap(Map<String, ? extends Object> map) {
-        Map<String, Object> printableMap = new HashMap<String, Object>();
-        for (Map.Entry<String, ? extends Object> entry : map.entrySet()) {
-            String fieldName = entry.getKey();
-            if (!fieldNamesToSkip.contains(fieldName) &&
-                    !fieldName.startsWith("javax.servlet") &&
-                    !fieldName.startsWith("org.apache") &&
-                    !fieldName.startsWith("_CLIENT_")) {
-                printableMap.put(fieldName, entry.getValue());
-            }
-        }
-        return UtilMisc.printMap(printableMap);
+        return UtilMisc.printMap(relevantEntries(map));
     }
 
     public static boolean parametersAreEqual(Map<String, ? extends Object> map1, Map<String, ? extends Object> map2) {
-        Set<String> unifiedContext = new HashSet<String>();
-        unifiedContext.addAll(map1.keySet());
-        unifiedContext.addAll(map2.keySet());
-        for (String fieldName: unifiedContext) {
-            if (fieldNamesToSkip.contains(fieldName)) {
-                continue;
-            }
-            if (fieldName.startsWith("javax.servlet") ||
-                    fieldName.startsWith("org.apache") ||
-                    fieldName.startsWith("_CLIENT_")) {
-                continue;
-            }
-            Object field1 = map1.get(fieldName);
-            Object field2 = map2.get(fieldName);
-            if (field1 == null && field2 == null) {
-                continue;
-            }
-            if ((field1 == null || field2 == null) && field1 != field2) {
-                Debug.logWarning("Screen Key doesn't match for :" + fieldName + "; value1 = " + field1 + "; value2 = " + field2, module);
-                return false;
-            }
-            if (!field1.equals(field2)) {
-                Debug.logWarning("Screen Key doesn't match for :" + fieldName + "; value1 = " + field1 + "; value2 = " + field2, module);
-                return false;
-            }
-        }
-        return true;
+        return relevantEntries(map1).equals(relevantEntries(map2));
     }
 }
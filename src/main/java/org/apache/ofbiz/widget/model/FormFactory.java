@@ -20,16 +20,22 @@ package org.apache.ofbiz.widget.model;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
 
 import org.apache.ofbiz.base.location.FlexibleLocation;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilHttp;
+import org.apache.ofbiz.base.util.UtilProperties;
 import org.apache.ofbiz.base.util.UtilXml;
 import org.apache.ofbiz.base.util.cache.UtilCache;
 import org.apache.ofbiz.entity.Delegator;
@@ -42,34 +48,43 @@ import org.xml.sax.SAXException;
 
 /**
  * Widget Library - Form factory class
+ * <p>
+ * The forms are cached per file and per delegator: each forms file is parsed once, and the forms
+ * extending a form of the same file share the model of that form.
+ * </p>
  */
 public class FormFactory {
 
     public static final String module = FormFactory.class.getName();
-    private static final UtilCache<String, ModelForm> formLocationCache = UtilCache.createUtilCache("widget.form.locationResource", 0, 0, false);
+    private static final String MODEL_FORMS_USER_DATA = "ofbiz.modelForms";
+    private static final boolean streamingEnabled = "true".equals(UtilProperties.getPropertyValue("widget", "widget.xml.streaming", "false"));
+    public static final UtilCache<String, Map<String, ModelForm>> formLocationCache = UtilCache.createUtilCache("widget.form.locationResource", 0, 0, false);
     private static final UtilCache<String, ModelForm> formWebappCache = UtilCache.createUtilCache("widget.form.webappResource", 0, 0, false);
+    private static final WidgetModelLoader<Map<String, ModelForm>> formLocationLoader = new WidgetModelLoader<Map<String, ModelForm>>("widget.form.locationResource", formLocationCache);
 
-    public static Map<String, ModelForm> getFormsFromLocation(String resourceName, ModelReader entityModelReader, DispatchContext dispatchContext)
+    public static Map<String, ModelForm> getFormsFromLocation(final String resourceName, final ModelReader entityModelReader, final DispatchContext dispatchContext)
             throws IOException, SAXException, ParserConfigurationException {
-        URL formFileUrl = FlexibleLocation.resolveLocation(resourceName);
-        Document formFileDoc = UtilXml.readXmlDocument(formFileUrl, true, true);
-        return readFormDocument(formFileDoc, entityModelReader, dispatchContext, resourceName);
+        String cacheKey = getLocationCacheKey(resourceName, dispatchContext);
+        return formLocationLoader.get(cacheKey, new Callable<Map<String, ModelForm>>() {
+            @Override
+            public Map<String, ModelForm> call() throws Exception {
+                URL formFileUrl = FlexibleLocation.resolveLocation(resourceName);
+                if (formFileUrl == null) {
+                    throw new IllegalArgumentException("Could not find resource [" + resourceName + "]");
+                }
+                return Collections.unmodifiableMap(readFormFile(formFileUrl, entityModelReader, dispatchContext, resourceName));
+            }
+        });
     }
 
     public static ModelForm getFormFromLocation(String resourceName, String formName, ModelReader entityModelReader, DispatchContext dispatchContext)
             throws IOException, SAXException, ParserConfigurationException {
-        StringBuilder sb = new StringBuilder(dispatchContext.getDelegator().getDelegatorName());
-        sb.append(":").append(resourceName).append("#").append(formName);
-        String cacheKey = sb.toString();
-        ModelForm modelForm = formLocationCache.get(cacheKey);
-        if (modelForm == null) {
-            URL formFileUrl = FlexibleLocation.resolveLocation(resourceName);
-            Document formFileDoc = UtilXml.readXmlDocument(formFileUrl, true, true);
-            if (formFileDoc == null) {
-                throw new IllegalArgumentException("Could not find resource [" + resourceName + "]");
-            }
-            modelForm = createModelForm(formFileDoc, entityModelReader, dispatchContext, resourceName, formName);
-            modelForm = formLocationCache.putIfAbsentAndGet(cacheKey, modelForm);
+        ModelForm modelForm;
+        if (formLocationLoader.isLoading(getLocationCacheKey(resourceName, dispatchContext))) {
+            // a form of the file being read extends a form of another file extending back into this file
+            modelForm = createModelForm(readFormFile(resourceName), entityModelReader, dispatchContext, resourceName, formName);
+        } else {
+            modelForm = getFormsFromLocation(resourceName, entityModelReader, dispatchContext).get(formName);
         }
         if (modelForm == null) {
             throw new IllegalArgumentException("Could not find form with name [" + formName + "] in class resource [" + resourceName + "]");
@@ -77,6 +92,55 @@ public class FormFactory {
         return modelForm;
     }
 
+    private static String getLocationCacheKey(String resourceName, DispatchContext dispatchContext) {
+        return dispatchContext.getDelegator().getDelegatorName() + ":" + resourceName;
+    }
+
+    private static Document readFormFile(String resourceName) throws IOException, SAXException, ParserConfigurationException {
+        URL formFileUrl = FlexibleLocation.resolveLocation(resourceName);
+        Document formFileDoc = UtilXml.readXmlDocument(formFileUrl, true, true);
+        if (formFileDoc == null) {
+            throw new IllegalArgumentException("Could not find resource [" + resourceName + "]");
+        }
+        return formFileDoc;
+    }
+
+    /**
+     * Reads the forms of the file at <code>formFileUrl</code>. With <code>widget.xml.streaming=true</code>
+     * in widget.properties, the forms are read one at a time, see {@link #streamFormFile(URL, Schema, ModelReader, DispatchContext, String)}.
+     */
+    public static Map<String, ModelForm> readFormFile(URL formFileUrl, ModelReader entityModelReader, DispatchContext dispatchContext, String formLocation)
+            throws IOException, SAXException, ParserConfigurationException {
+        if (streamingEnabled) {
+            try {
+                return streamFormFile(formFileUrl, WidgetXmlStreamReader.getSchema("widget-form.xsd"), entityModelReader, dispatchContext, formLocation);
+            } catch (SAXException e) {
+                Debug.logWarning(e, "Could not stream [" + formLocation + "], reading it without streaming", module);
+            }
+        }
+        Document formFileDoc = UtilXml.readXmlDocument(formFileUrl, true, true);
+        return readFormDocument(formFileDoc, entityModelReader, dispatchContext, formLocation);
+    }
+
+    /**
+     * Reads the forms of the file at <code>formFileUrl</code> one at a time with a {@link WidgetXmlStreamReader},
+     * each validated against <code>formSchema</code> so its attributes get their schema default values. A form
+     * extending a form of the same file gets it from the forms built before, see
+     * {@link #getSameFileModelForm(Element, String, ModelReader, DispatchContext, String)}.
+     */
+    public static Map<String, ModelForm> streamFormFile(URL formFileUrl, Schema formSchema, final ModelReader entityModelReader, final DispatchContext dispatchContext,
+            final String formLocation) throws IOException, SAXException {
+        final Map<String, ModelForm> modelFormMap = new HashMap<String, ModelForm>();
+        WidgetXmlStreamReader.readElements(formFileUrl, "forms", "form", formSchema, new WidgetXmlStreamReader.ElementHandler() {
+            @Override
+            public void handleElement(Element formElement) {
+                formElement.getOwnerDocument().setUserData(MODEL_FORMS_USER_DATA, modelFormMap, null);
+                getModelForm(formElement, entityModelReader, dispatchContext, formLocation);
+            }
+        });
+        return modelFormMap;
+    }
+
     public static ModelForm getFormFromWebappContext(String resourceName, String formName, HttpServletRequest request)
             throws IOException, SAXException, ParserConfigurationException {
         String webappName = UtilHttp.getApplicationName(request);
@@ -108,19 +172,64 @@ public class FormFactory {
             }
             List<? extends Element> formElements = UtilXml.childElementList(rootElement, "form");
             for (Element formElement : formElements) {
-                String formName = formElement.getAttribute("name");
-                String cacheKey = formLocation + "#" + formName;
-                ModelForm modelForm = formLocationCache.get(cacheKey);
-                if (modelForm == null) {
-                    modelForm = createModelForm(formElement, entityModelReader, dispatchContext, formLocation, formName);
-                    modelForm = formLocationCache.putIfAbsentAndGet(cacheKey, modelForm);
-                }
-                modelFormMap.put(formName, modelForm);
+                modelFormMap.put(formElement.getAttribute("name"), getModelForm(formElement, entityModelReader, dispatchContext, formLocation));
             }
         }
         return modelFormMap;
     }
 
+    /**
+     * Returns the model of <code>formElement</code>. The models are kept with the document of the element,
+     * so a form extended by other forms of the same document is built once.
+     */
+    public static ModelForm getModelForm(Element formElement, ModelReader entityModelReader, DispatchContext dispatchContext, String formLocation) {
+        Document formFileDoc = formElement.getOwnerDocument();
+        Map<String, ModelForm> modelForms = UtilGenerics.cast(formFileDoc.getUserData(MODEL_FORMS_USER_DATA));
+        if (modelForms == null) {
+            modelForms = new HashMap<String, ModelForm>();
+            formFileDoc.setUserData(MODEL_FORMS_USER_DATA, modelForms, null);
+        }
+        String formName = formElement.getAttribute("name");
+        ModelForm modelForm = modelForms.get(formName);
+        if (modelForm == null) {
+            modelForm = createModelForm(formElement, entityModelReader, dispatchContext, formLocation, formName);
+            modelForms.put(formName, modelForm);
+        }
+        return modelForm;
+    }
+
+    /**
+     * Returns the model of the form named <code>formName</code> in the same file as <code>formElement</code>, or
+     * <code>null</code> if there is none. When the file is streamed only the forms built so far are known, a form
+     * defined further in the file is read from the DOM of the file.
+     */
+    public static ModelForm getSameFileModelForm(Element formElement, String formName, ModelReader entityModelReader, DispatchContext dispatchContext,
+            String formLocation) {
+        Document formFileDoc = formElement.getOwnerDocument();
+        Map<String, ModelForm> modelForms = UtilGenerics.cast(formFileDoc.getUserData(MODEL_FORMS_USER_DATA));
+        if (modelForms != null && modelForms.containsKey(formName)) {
+            return modelForms.get(formName);
+        }
+        if (WidgetXmlStreamReader.isStreamed(formFileDoc)) {
+            try {
+                formFileDoc = readFormFile(formLocation);
+            } catch (Exception e) {
+                Debug.logError(e, "Failed to read form definition '" + formName + "' from resource '" + formLocation + "'", module);
+                return null;
+            }
+        }
+        Element rootElement = formFileDoc.getDocumentElement();
+        List<? extends Element> formElements = UtilXml.childElementList(rootElement, "form");
+        //Uncomment below to add support for abstract forms
+        //formElements.addAll(UtilXml.childElementList(rootElement, "abstract-form"));
+        for (Element parentElement : formElements) {
+            if (parentElement.getAttribute("name").equals(formName)) {
+                return getModelForm(parentElement, entityModelReader, dispatchContext, formLocation);
+            }
+        }
+        return null;
+    }
+
     public static ModelForm createModelForm(Document formFileDoc, ModelReader entityModelReader, DispatchContext dispatchContext, String formLocation, String formName) {
         Element rootElement = formFileDoc.getDocumentElement();
         if (!"forms".equalsIgnoreCase(rootElement.getTagName())) {
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Widget Library - The layout of the rows rendered for each item of a list or multi form.
+ * <p>
+ * Each item is rendered in one row per field position. The fields of a row are split into the
+ * display/hyperlink fields rendered before the input fields, the input fields, and the display/hyperlink
+ * fields rendered after them. That split only depends on the field list of the form, so it is computed
+ * once when the form is built instead of for every item.
+ * </p>
+ * <p>
+ * When the form has several fields with the same name and a use-when attribute (usually coming from an
+ * extended form), the fields to render depend on the item: {@link #getRows(Map)} removes the duplicates
+ * for the item, and computes the rows again only when a field was removed.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public final class FormRowLayout implements Serializable {
+
+    private final ModelFormField[] fields;
+    /** For each field having a use-when attribute, the indexes of the following fields with the same name. */
+    private final int[][] sameNameFields;
+    private final List<Row> rows;
+
+    public FormRowLayout(List<ModelFormField> fieldList) {
+        this.fields = fieldList.toArray(new ModelFormField[fieldList.size()]);
+        this.sameNameFields = new int[fields.length][];
+        for (int j = 0; j < fields.length; j++) {
+            if (fields[j].isUseWhenEmpty()) {
+                continue;
+            }
+            int[] indexes = new int[fields.length - j - 1];
+            int count = 0;
+            for (int i = j + 1; i < fields.length; i++) {
+                if (fields[i].getName() != null && fields[i].getName().equals(fields[j].getName())) {
+                    indexes[count++] = i;
+                }
+            }
+            if (count > 0) {
+                sameNameFields[j] = Arrays.copyOf(indexes, count);
+            }
+        }
+        this.rows = createRows(fieldList);
+    }
+
+    /**
+     * Returns the rows to render for the item in <code>context</code>, sorted by position. When two fields
+     * have the same name and the same use-when result, the second one is not rendered.
+     */
+    public List<Row> getRows(Map<String, Object> context) {
+        boolean[] removed = null;
+        for (int j = 0; j < fields.length; j++) {
+            if (sameNameFields[j] == null || (removed != null && removed[j])) {
+                continue;
+            }
+            boolean shouldUse1 = fields[j].shouldUse(context);
+            for (int i : sameNameFields[j]) {
+                if (removed != null && removed[i]) {
+                    continue;
+                }
+                if (fields[i].shouldUse(context) == shouldUse1) {
+                    if (removed == null) {
+                        removed = new boolean[fields.length];
+                    }
+                    removed[i] = true;
+                }
+            }
+        }
+        if (removed == null) {
+            return rows;
+        }
+        List<ModelFormField> fieldList = new ArrayList<ModelFormField>(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            if (!removed[i]) {
+                fieldList.add(fields[i]);
+            }
+        }
+        return createRows(fieldList);
+    }
+
+    private static List<Row> createRows(List<ModelFormField> fieldList) {
+        Map<Integer, List<ModelFormField>> fieldsByPosition = new TreeMap<Integer, List<ModelFormField>>();
+        for (ModelFormField modelFormField : fieldList) {
+            Integer position = Integer.valueOf(modelFormField.getPosition());
+            List<ModelFormField> fieldListByPosition = fieldsByPosition.get(position);
+            if (fieldListByPosition == null) {
+                fieldListByPosition = new ArrayList<ModelFormField>();
+                fieldsByPosition.put(position, fieldListByPosition);
+            }
+            fieldListByPosition.add(modelFormField);
+        }
+        List<Row> rows = new ArrayList<Row>(fieldsByPosition.size());
+        for (Map.Entry<Integer, List<ModelFormField>> entry : fieldsByPosition.entrySet()) {
+            Row row = new Row(entry.getKey().intValue(), entry.getValue());
+            // a position without display, hyperlink or input field is not rendered
+            if (!row.displayHyperlinkFieldsBegin.isEmpty() || !row.inputFields.isEmpty() || !row.displayHyperlinkFieldsEnd.isEmpty()) {
+                rows.add(row);
+            }
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    /** The fields of one position. */
+    public static final class Row implements Serializable {
+
+        private final int position;
+        private final List<ModelFormField> fieldList;
+        private final List<ModelFormField> displayHyperlinkFieldsBegin;
+        private final List<ModelFormField> inputFields;
+        private final List<ModelFormField> displayHyperlinkFieldsEnd;
+        private final Map<String, Integer> displayHyperlinkFieldsBeginCount;
+
+        private Row(int position, List<ModelFormField> fieldList) {
+            this.position = position;
+            this.fieldList = Collections.unmodifiableList(fieldList);
+            List<ModelFormField> displayHyperlinkFieldsBegin = new ArrayList<ModelFormField>();
+            List<ModelFormField> inputFields = new ArrayList<ModelFormField>();
+            List<ModelFormField> displayHyperlinkFieldsEnd = new ArrayList<ModelFormField>();
+            // the display/hyperlink fields following the first input field are rendered after the input fields
+            List<ModelFormField> displayHyperlinkFields = displayHyperlinkFieldsBegin;
+            for (ModelFormField modelFormField : fieldList) {
+                int fieldType = modelFormField.getFieldInfo().getFieldType();
+                if (fieldType == FieldInfo.HIDDEN || fieldType == FieldInfo.IGNORED) {
+                    continue;
+                }
+                if (FieldInfo.isInputFieldType(fieldType)) {
+                    inputFields.add(modelFormField);
+                    displayHyperlinkFields = displayHyperlinkFieldsEnd;
+                } else {
+                    displayHyperlinkFields.add(modelFormField);
+                }
+            }
+            Map<String, Integer> displayHyperlinkFieldsBeginCount = new HashMap<String, Integer>();
+            for (ModelFormField modelFormField : displayHyperlinkFieldsBegin) {
+                Integer count = displayHyperlinkFieldsBeginCount.get(modelFormField.getFieldName());
+                displayHyperlinkFieldsBeginCount.put(modelFormField.getFieldName(), count == null ? 1 : count + 1);
+            }
+            this.displayHyperlinkFieldsBegin = Collections.unmodifiableList(displayHyperlinkFieldsBegin);
+            this.inputFields = Collections.unmodifiableList(inputFields);
+            this.displayHyperlinkFieldsEnd = Collections.unmodifiableList(displayHyperlinkFieldsEnd);
+            this.displayHyperlinkFieldsBeginCount = Collections.unmodifiableMap(displayHyperlinkFieldsBeginCount);
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        /** Returns all the fields of the position, in the form order. */
+        public List<ModelFormField> getFieldList() {
+            return fieldList;
+        }
+
+        /** Returns the display and hyperlink fields preceding the first input field. */
+        public List<ModelFormField> getDisplayHyperlinkFieldsBegin() {
+            return displayHyperlinkFieldsBegin;
+        }
+
+        /** Returns the input fields. */
+        public List<ModelFormField> getInputFields() {
+            return inputFields;
+        }
+
+        /** Returns the display and hyperlink fields following the first input field. */
+        public List<ModelFormField> getDisplayHyperlinkFieldsEnd() {
+            return displayHyperlinkFieldsEnd;
+        }
+
+        /** Returns the number of display and hyperlink fields preceding the first input field, by field name. */
+        public Map<String, Integer> getDisplayHyperlinkFieldsBeginCount() {
+            return displayHyperlinkFieldsBeginCount;
+        }
+    }
+}
@@ -20,15 +20,18 @@ package org.apache.ofbiz.widget.model;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.ofbiz.base.location.FlexibleLocation;
+import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilHttp;
 import org.apache.ofbiz.base.util.UtilXml;
 import org.apache.ofbiz.base.util.cache.UtilCache;
@@ -43,34 +46,47 @@ import org.xml.sax.SAXException;
 
 /**
  * Widget Library - Grid factory class
+ * <p>
+ * The grids are cached per file and per delegator: each grids file is parsed once, and the grids
+ * extending a grid of the same file share the model of that grid.
+ * </p>
  */
 public class GridFactory {
 
     public static final String module = GridFactory.class.getName();
-    private static final UtilCache<String, ModelGrid> gridLocationCache = UtilCache.createUtilCache("widget.grid.locationResource", 0, 0, false);
+    private static final String MODEL_GRIDS_USER_DATA = "ofbiz.modelGrids";
+    public static final UtilCache<String, Map<String, ModelGrid>> gridLocationCache = UtilCache.createUtilCache("widget.grid.locationResource", 0, 0, false);
     private static final UtilCache<String, ModelGrid> gridWebappCache = UtilCache.createUtilCache("widget.grid.webappResource", 0, 0, false);
+    private static final WidgetModelLoader<Map<String, ModelGrid>> gridLocationLoader = new WidgetModelLoader<Map<String, ModelGrid>>("widget.grid.locationResource", gridLocationCache);
+    /** The grids read from the form elements of each file, keyed like gridLocationCache. */
+    public static final UtilCache<String, Map<String, ModelGrid>> gridFormLocationCache = UtilCache.createUtilCache("widget.grid.formLocationResource", 0, 0, false);
+    private static final WidgetModelLoader<Map<String, ModelGrid>> gridFormLocationLoader = new WidgetModelLoader<Map<String, ModelGrid>>("widget.grid.formLocationResource", gridFormLocationCache);
 
-    public static Map<String, ModelGrid> getGridsFromLocation(String resourceName, ModelReader entityModelReader, DispatchContext dispatchContext)
+    public static Map<String, ModelGrid> getGridsFromLocation(final String resourceName, final ModelReader entityModelReader, final DispatchContext dispatchContext)
             throws IOException, SAXException, ParserConfigurationException {
-        URL gridFileUrl = FlexibleLocation.resolveLocation(resourceName);
-        Document gridFileDoc = UtilXml.readXmlDocument(gridFileUrl, true, true);
-        return readGridDocument(gridFileDoc, entityModelReader, dispatchContext, resourceName);
+        String cacheKey = getLocationCacheKey(resourceName, dispatchContext);
+        return gridLocationLoader.get(cacheKey, new Callable<Map<String, ModelGrid>>() {
+            @Override
+            public Map<String, ModelGrid> call() throws Exception {
+                Document gridFileDoc = readGridFile(resourceName);
+                return Collections.unmodifiableMap(readGridDocument(gridFileDoc, entityModelReader, dispatchContext, resourceName));
+            }
+        });
     }
 
     public static ModelGrid getGridFromLocation(String resourceName, String gridName, ModelReader entityModelReader, DispatchContext dispatchContext)
             throws IOException, SAXException, ParserConfigurationException {
-        StringBuilder sb = new StringBuilder(dispatchContext.getDelegator().getDelegatorName());
-        sb.append(":").append(resourceName).append("#").append(gridName);
-        String cacheKey = sb.toString();
-        ModelGrid modelGrid = gridLocationCache.get(cacheKey);
-        if (modelGrid == null) {
-            URL gridFileUrl = FlexibleLocation.resolveLocation(resourceName);
-            Document gridFileDoc = UtilXml.readXmlDocument(gridFileUrl, true, true);
-            if (gridFileDoc == null) {
-                throw new IllegalArgumentException("Could not find resource [" + resourceName + "]");
+        ModelGrid modelGrid;
+        String cacheKey = getLocationCacheKey(resourceName, dispatchContext);
+        if (gridLocationLoader.isLoading(cacheKey) || gridFormLocationLoader.isLoading(cacheKey)) {
+            // a grid of the file being read extends a grid of another file extending back into this file
+            modelGrid = createModelGrid(readGridFile(resourceName), entityModelReader, dispatchContext, resourceName, gridName);
+        } else {
+            modelGrid = getGridsFromLocation(resourceName, entityModelReader, dispatchContext).get(gridName);
+            if (modelGrid == null) {
+                // Backwards compatibility - look for form definition
+                modelGrid = getFormGridsFromLocation(resourceName, entityModelReader, dispatchContext).get(gridName);
             }
-            modelGrid = createModelGrid(gridFileDoc, entityModelReader, dispatchContext, resourceName, gridName);
-            modelGrid = gridLocationCache.putIfAbsentAndGet(cacheKey, modelGrid);
         }
         if (modelGrid == null) {
             throw new IllegalArgumentException("Could not find grid with name [" + gridName + "] in class resource [" + resourceName + "]");
@@ -78,6 +94,43 @@ public class GridFactory {
         return modelGrid;
     }
 
+    /**
+     * Returns the grids read from the form elements of <code>resourceName</code>, whatever their type, for the
+     * grid names not defined by a grid element.
+     */
+    public static Map<String, ModelGrid> getFormGridsFromLocation(final String resourceName, final ModelReader entityModelReader, final DispatchContext dispatchContext)
+            throws IOException, SAXException, ParserConfigurationException {
+        String cacheKey = getLocationCacheKey(resourceName, dispatchContext);
+        return gridFormLocationLoader.get(cacheKey, new Callable<Map<String, ModelGrid>>() {
+            @Override
+            public Map<String, ModelGrid> call() throws Exception {
+                Document gridFileDoc = readGridFile(resourceName);
+                Map<String, ModelGrid> modelGridMap = new HashMap<String, ModelGrid>();
+                Element rootElement = gridFileDoc.getDocumentElement();
+                if (!"forms".equalsIgnoreCase(rootElement.getTagName())) {
+                    rootElement = UtilXml.firstChildElement(rootElement, "forms");
+                }
+                for (Element formElement : UtilXml.childElementList(rootElement, "form")) {
+                    modelGridMap.put(formElement.getAttribute("name"), getModelGrid(formElement, entityModelReader, dispatchContext, resourceName));
+                }
+                return Collections.unmodifiableMap(modelGridMap);
+            }
+        });
+    }
+
+    private static String getLocationCacheKey(String resourceName, DispatchContext dispatchContext) {
+        return dispatchContext.getDelegator().getDelegatorName() + ":" + resourceName;
+    }
+
+    private static Document readGridFile(String resourceName) throws IOException, SAXException, ParserConfigurationException {
+        URL gridFileUrl = FlexibleLocation.resolveLocation(resourceName);
+        Document gridFileDoc = UtilXml.readXmlDocument(gridFileUrl, true, true);
+        if (gridFileDoc == null) {
+            throw new IllegalArgumentException("Could not find resource [" + resourceName + "]");
+        }
+        return gridFileDoc;
+    }
+
     public static ModelGrid getGridFromWebappContext(String resourceName, String gridName, HttpServletRequest request)
             throws IOException, SAXException, ParserConfigurationException {
         String webappName = UtilHttp.getApplicationName(request);
@@ -106,19 +159,32 @@ public class GridFactory {
             Element rootElement = gridFileDoc.getDocumentElement();
             List<? extends Element> gridElements = UtilXml.childElementList(rootElement, "grid");
             for (Element gridElement : gridElements) {
-                String gridName = gridElement.getAttribute("name");
-                String cacheKey = gridLocation + "#" + gridName;
-                ModelGrid modelGrid = gridLocationCache.get(cacheKey);
-                if (modelGrid == null) {
-                    modelGrid = createModelGrid(gridElement, entityModelReader, dispatchContext, gridLocation, gridName);
-                    modelGrid = gridLocationCache.putIfAbsentAndGet(cacheKey, modelGrid);
-                }
-                modelGridMap.put(gridName, modelGrid);
+                modelGridMap.put(gridElement.getAttribute("name"), getModelGrid(gridElement, entityModelReader, dispatchContext, gridLocation));
             }
         }
         return modelGridMap;
     }
 
+    /**
+     * Returns the model of <code>gridElement</code>. The models are kept with the document of the element,
+     * so a grid extended by other grids of the same document is built once.
+     */
+    public static ModelGrid getModelGrid(Element gridElement, ModelReader entityModelReader, DispatchContext dispatchContext, String gridLocation) {
+        Document gridFileDoc = gridElement.getOwnerDocument();
+        Map<String, ModelGrid> modelGrids = UtilGenerics.cast(gridFileDoc.getUserData(MODEL_GRIDS_USER_DATA));
+        if (modelGrids == null) {
+            modelGrids = new HashMap<String, ModelGrid>();
+            gridFileDoc.setUserData(MODEL_GRIDS_USER_DATA, modelGrids, null);
+        }
+        String gridName = gridElement.getAttribute("name");
+        ModelGrid modelGrid = modelGrids.get(gridName);
+        if (modelGrid == null) {
+            modelGrid = createModelGrid(gridElement, entityModelReader, dispatchContext, gridLocation, gridName);
+            modelGrids.put(gridName, modelGrid);
+        }
+        return modelGrid;
+    }
+
     public static ModelGrid createModelGrid(Document gridFileDoc, ModelReader entityModelReader, DispatchContext dispatchContext, String gridLocation, String gridName) {
         Element gridElement = UtilXml.firstChildElement(gridFileDoc.getDocumentElement(), "grid", "name", gridName);
         if (gridElement == null) {
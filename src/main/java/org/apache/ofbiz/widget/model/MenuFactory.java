@@ -28,6 +28,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.ofbiz.base.location.FlexibleLocation;
+import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilHttp;
 import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.base.util.UtilXml;
@@ -90,12 +91,20 @@ public class MenuFactory {
         return modelMenuMap;
     }
 
-    public static ModelMenu getMenuFromLocation(String resourceName, String menuName) throws IOException, SAXException, ParserConfigurationException {
+    public static Map<String, ModelMenu> getMenusFromLocation(String resourceName) throws IOException, SAXException, ParserConfigurationException {
         Map<String, ModelMenu> modelMenuMap = menuLocationCache.get(resourceName);
         if (modelMenuMap == null) {
             URL menuFileUrl = FlexibleLocation.resolveLocation(resourceName);
-            Document menuFileDoc = UtilXml.readXmlDocument(menuFileUrl, true, true);
-            modelMenuMap = readMenuDocument(menuFileDoc, resourceName);
+            if (WidgetModelSnapshot.isEnabled()) {
+                modelMenuMap = UtilGenerics.cast(WidgetModelSnapshot.read(resourceName, menuFileUrl));
+            }
+            if (modelMenuMap == null) {
+                Document menuFileDoc = UtilXml.readXmlDocument(menuFileUrl, true, true);
+                modelMenuMap = readMenuDocument(menuFileDoc, resourceName);
+                if (WidgetModelSnapshot.isEnabled()) {
+                    WidgetModelSnapshot.write(resourceName, menuFileUrl, modelMenuMap);
+                }
+            }
             menuLocationCache.putIfAbsent(resourceName, modelMenuMap);
             modelMenuMap = menuLocationCache.get(resourceName);
         }
@@ -103,7 +112,11 @@ public class MenuFactory {
         if (UtilValidate.isEmpty(modelMenuMap)) {
             throw new IllegalArgumentException("Could not find menu file in location [" + resourceName + "]");
         }
+        return modelMenuMap;
+    }
 
+    public static ModelMenu getMenuFromLocation(String resourceName, String menuName) throws IOException, SAXException, ParserConfigurationException {
+        Map<String, ModelMenu> modelMenuMap = getMenusFromLocation(resourceName);
         ModelMenu modelMenu = modelMenuMap.get(menuName);
         if (modelMenu == null) {
             throw new IllegalArgumentException("Could not find menu with name [" + menuName + "] in location [" + resourceName + "]");
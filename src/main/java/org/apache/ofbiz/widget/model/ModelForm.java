@@ -33,8 +33,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.apache.ofbiz.base.util.Debug;
-import org.apache.ofbiz.base.util.GroovyUtil;
-import org.apache.ofbiz.base.util.StringUtil;
 import org.apache.ofbiz.base.util.UtilCodec;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilProperties;
@@ -175,6 +173,7 @@ public abstract class ModelForm extends ModelWidget {
     private final ModelForm parentModel;
     private final List<ModelAction> rowActions;
     private final FlexibleStringExpander rowCountExdr;
+    private final FormRowLayout rowLayout;
     private final boolean separateColumns;
     private final boolean skipEnd;
     private final boolean skipStart;
@@ -716,6 +715,7 @@ public abstract class ModelForm extends ModelWidget {
             fieldList.add(builder.build());
         }
         this.fieldList = Collections.unmodifiableList(fieldList);
+        this.rowLayout = new FormRowLayout(this.fieldList);
         List<ModelFormField> multiSubmitFields = new ArrayList<ModelFormField>(multiSubmitBuilders.size());
         for (ModelFormFieldBuilder builder : multiSubmitBuilders) {
             multiSubmitFields.add(builder.build());
@@ -1265,6 +1265,11 @@ public abstract class ModelForm extends ModelWidget {
         return rowCountExdr.getOriginal();
     }
 
+    /** Returns the layout of the rows rendered for each item of a list or multi form. */
+    public FormRowLayout getRowLayout() {
+        return rowLayout;
+    }
+
     public boolean getSeparateColumns() {
         return this.separateColumns;
     }
@@ -1309,7 +1314,7 @@ public abstract class ModelForm extends ModelWidget {
         String styles = "";
         try {
             for (AltRowStyle altRowStyle : this.altRowStyles) {
-                Object retVal = GroovyUtil.eval(StringUtil.convertOperatorSubstitutions(altRowStyle.useWhen),context);
+                Object retVal = UseWhenEvaluator.eval(altRowStyle.useWhen, context);
                 // retVal should be a Boolean, if not something weird is up...
                 if (retVal instanceof Boolean) {
                     Boolean boolVal = (Boolean) retVal;
@@ -1345,7 +1350,7 @@ public abstract class ModelForm extends ModelWidget {
         try {
             for (AltTarget altTarget : this.altTargets) {
                 String useWhen = FlexibleStringExpander.expandString(altTarget.useWhen, context);
-                Object retVal = GroovyUtil.eval(StringUtil.convertOperatorSubstitutions(useWhen),context);
+                Object retVal = UseWhenEvaluator.eval(useWhen, context);
                 boolean condTrue = false;
                 // retVal should be a Boolean, if not something weird is up...
                 if (retVal instanceof Boolean) {
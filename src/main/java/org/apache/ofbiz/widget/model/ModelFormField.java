@@ -24,17 +24,22 @@ import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.codehaus.groovy.control.CompilationFailedException;
 import org.apache.ofbiz.base.conversion.ConversionException;
@@ -42,9 +47,7 @@ import org.apache.ofbiz.base.conversion.DateTimeConverters;
 import org.apache.ofbiz.base.conversion.DateTimeConverters.StringToTimestamp;
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.GeneralException;
-import org.apache.ofbiz.base.util.GroovyUtil;
 import org.apache.ofbiz.base.util.ObjectType;
-import org.apache.ofbiz.base.util.StringUtil;
 import org.apache.ofbiz.base.util.UtilCodec;
 import org.apache.ofbiz.base.util.UtilDateTime;
 import org.apache.ofbiz.base.util.UtilFormatOut;
@@ -61,11 +64,15 @@ import org.apache.ofbiz.entity.GenericEntity;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
 import org.apache.ofbiz.entity.finder.EntityFinderUtil;
 import org.apache.ofbiz.entity.model.ModelEntity;
+import org.apache.ofbiz.entity.model.ModelFieldType;
 import org.apache.ofbiz.entity.model.ModelUtil;
 import org.apache.ofbiz.entity.util.EntityUtil;
 import org.apache.ofbiz.widget.WidgetWorker;
+import org.apache.ofbiz.widget.cache.OptionValuesCache;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
 import org.apache.ofbiz.widget.model.CommonWidgetModels.AutoEntityParameters;
 import org.apache.ofbiz.widget.model.CommonWidgetModels.AutoServiceParameters;
 import org.apache.ofbiz.widget.model.CommonWidgetModels.Image;
@@ -140,6 +147,8 @@ public class ModelFormField {
     private final String tooltipStyle;
     private final FlexibleStringExpander useWhen;
     private final FlexibleStringExpander ignoreWhen;
+    private final boolean rowInvariantUseWhen;
+    private final boolean rowInvariantIgnoreWhen;
     private final String widgetAreaStyle;
     private final String widgetStyle;
     private final String parentFormName;
@@ -193,6 +202,8 @@ public class ModelFormField {
         this.tooltipStyle = builder.getTooltipStyle();
         this.useWhen = builder.getUseWhen();
         this.ignoreWhen = builder.getIgnoreWhen();
+        this.rowInvariantUseWhen = this.useWhen != null && UseWhenEvaluator.isRowInvariant(this.useWhen.getOriginal());
+        this.rowInvariantIgnoreWhen = this.ignoreWhen != null && UseWhenEvaluator.isRowInvariant(this.ignoreWhen.getOriginal());
         this.widgetAreaStyle = builder.getWidgetAreaStyle();
         this.widgetStyle = builder.getWidgetStyle();
         this.parentFormName = builder.getParentFormName();
@@ -843,19 +854,8 @@ public class ModelFormField {
             return true;
 
         try {
-            Object retVal = GroovyUtil.eval(StringUtil.convertOperatorSubstitutions(useWhenStr),context);
-            boolean condTrue = false;
-            // retVal should be a Boolean, if not something weird is up...
-            if (retVal instanceof Boolean) {
-                Boolean boolVal = (Boolean) retVal;
-                condTrue = boolVal.booleanValue();
-            } else {
-                throw new IllegalArgumentException("Return value from use-when condition eval was not a Boolean: "
-                        + (retVal != null ? retVal.getClass().getName() : "null") + " [" + retVal + "] on the field " + this.name
-                        + " of form " + this.modelForm.getName());
-            }
-
-            return condTrue;
+            return UseWhenEvaluator.evalCondition(this.useWhen, useWhenStr, this.rowInvariantUseWhen, context,
+                    "use-when condition", this);
         } catch (CompilationFailedException e) {
             String errMsg = "Error evaluating groovy use-when condition [" + useWhenStr + "] on the field " + this.name
                     + " of form " + this.modelForm.getName() + ": " + e.toString();
@@ -1241,6 +1241,13 @@ public class ModelFormField {
      * @see <code>widget-form.xsd</code>
      */
     public static class DisplayEntityField extends DisplayField {
+        /**
+         * The context entry of the values read before rendering the rows of a list form: a
+         * <code>Map&lt;DisplayEntityField, Map&lt;String, GenericValue&gt;&gt;</code> of the values by key value.
+         */
+        public static final String PREFETCHED_VALUES = "displayEntityPrefetchedValues";
+        private static final int MAX_KEYS_PER_QUERY = 500;
+
         private final boolean cache;
         private final String entityName;
         private final String keyFieldName;
@@ -1313,8 +1320,14 @@ public class ModelFormField {
 
             Delegator delegator = WidgetWorker.getDelegator(context);
             String fieldValue = getModelFormField().getEntry(context);
+            Map<DisplayEntityField, Map<String, GenericValue>> prefetchedValues = UtilGenerics.cast(context.get(PREFETCHED_VALUES));
+            Map<String, GenericValue> fieldValues = prefetchedValues != null ? prefetchedValues.get(this) : null;
             try {
-                value = delegator.findOne(this.entityName, this.cache, fieldKey, fieldValue);
+                if (fieldValues != null && fieldValues.containsKey(fieldValue)) {
+                    value = fieldValues.get(fieldValue);
+                } else {
+                    value = delegator.findOne(this.entityName, this.cache, fieldKey, fieldValue);
+                }
             } catch (GenericEntityException e) {
                 String errMsg = "Error getting value from the database for display of field [" + getModelFormField().getName()
                         + "] on form [" + getModelFormField().modelForm.getName() + "]: " + e.toString();
@@ -1357,6 +1370,48 @@ public class ModelFormField {
             return keyFieldName;
         }
 
+        /**
+         * Reads the values displayed for all the <code>keyValues</code> with one query per
+         * {@value #MAX_KEYS_PER_QUERY} keys. The returned map has an entry for each key value, with a
+         * <code>null</code> value when there is no entity for that key. Returns <code>null</code> when the field
+         * reads the entity cache, or when the key field is not the single String primary key of the entity: the
+         * values are then read one at a time. The cached values are read from the single value cache, an IN
+         * query would add a list to the entity list cache for each page.
+         */
+        public Map<String, GenericValue> findValues(Delegator delegator, Collection<String> keyValues) throws GenericEntityException {
+            if (this.cache) {
+                return null;
+            }
+            String fieldKey = this.keyFieldName;
+            if (UtilValidate.isEmpty(fieldKey))
+                fieldKey = getModelFormField().fieldName;
+            ModelEntity modelEntity = delegator.getModelEntity(this.entityName);
+            if (modelEntity == null || modelEntity.getPksSize() != 1 || !fieldKey.equals(modelEntity.getPkFieldNames().get(0))) {
+                return null;
+            }
+            ModelFieldType fieldType = delegator.getEntityFieldType(modelEntity, modelEntity.getField(fieldKey).getType());
+            if (fieldType == null || !("String".equals(fieldType.getJavaType()) || "java.lang.String".equals(fieldType.getJavaType()))) {
+                return null;
+            }
+            Map<String, GenericValue> values = new HashMap<String, GenericValue>();
+            List<String> queryKeyValues = new ArrayList<String>(Math.min(keyValues.size(), MAX_KEYS_PER_QUERY));
+            Iterator<String> keyValueIter = keyValues.iterator();
+            while (keyValueIter.hasNext()) {
+                String keyValue = keyValueIter.next();
+                values.put(keyValue, null);
+                queryKeyValues.add(keyValue);
+                if (queryKeyValues.size() == MAX_KEYS_PER_QUERY || !keyValueIter.hasNext()) {
+                    List<GenericValue> foundValues = delegator.findList(this.entityName,
+                            EntityCondition.makeCondition(fieldKey, EntityOperator.IN, queryKeyValues), null, null, null, false);
+                    for (GenericValue foundValue : foundValues) {
+                        values.put(foundValue.getString(fieldKey), foundValue);
+                    }
+                    queryKeyValues.clear();
+                }
+            }
+            return values;
+        }
+
         public SubHyperlink getSubHyperlink() {
             return this.subHyperlink;
         }
@@ -1818,9 +1873,42 @@ public class ModelFormField {
      * @see <code>widget-form.xsd</code>
      */
     public static class EntityOptions extends OptionSource {
+        /**
+         * The context entry of the option values read while rendering the rows of a list or multi form: a
+         * <code>Map&lt;List&lt;Object&gt;, List&lt;OptionValue&gt;&gt;</code> keyed by entity-options, condition and locale.
+         */
+        public static final String RENDER_OPTION_VALUES = "entityOptionValues";
+        private static final OptionValuesCache optionValuesCache = new OptionValuesCache();
+        private static final Pattern expansionPattern = Pattern.compile("\\$\\{([^{}]*)\\}");
+        private static final Pattern variablePattern = Pattern.compile("\\s*([A-Za-z_][\\w]*)(\\.[A-Za-z_][\\w]*)*\\s*");
+
+        /**
+         * Returns the names of the variables read by the <code>${}</code> expansions of <code>expression</code>,
+         * or <code>null</code> if they are not all simple variables or properties.
+         */
+        private static Set<String> getExpansionNames(String expression) {
+            Set<String> names = new HashSet<String>();
+            Matcher expansionMatcher = expansionPattern.matcher(expression);
+            int expansionCount = 0;
+            while (expansionMatcher.find()) {
+                Matcher variableMatcher = variablePattern.matcher(expansionMatcher.group(1));
+                if (!variableMatcher.matches()) {
+                    return null;
+                }
+                names.add(variableMatcher.group(1));
+                expansionCount++;
+            }
+            // an expansion nested in another one was not matched
+            if (expansionCount != expression.split("\\$\\{", -1).length - 1) {
+                return null;
+            }
+            return Collections.unmodifiableSet(names);
+        }
+
         private final boolean cache;
         private final List<EntityFinderUtil.ConditionExpr> constraintList;
         private final FlexibleStringExpander description;
+        private final Set<String> descriptionNames;
         private final String entityName;
         private final String filterByDate;
         private final String keyFieldName;
@@ -1841,6 +1929,7 @@ public class ModelFormField {
                 this.constraintList = Collections.emptyList();
             }
             this.description = FlexibleStringExpander.getInstance(entityOptionsElement.getAttribute("description"));
+            this.descriptionNames = getExpansionNames(this.description.getOriginal());
             this.entityName = entityOptionsElement.getAttribute("entity-name");
             this.filterByDate = entityOptionsElement.getAttribute("filter-by-date");
             this.keyFieldName = entityOptionsElement.getAttribute("key-field-name");
@@ -1861,6 +1950,7 @@ public class ModelFormField {
             this.cache = original.cache;
             this.constraintList = original.constraintList;
             this.description = original.description;
+            this.descriptionNames = original.descriptionNames;
             this.entityName = original.entityName;
             this.filterByDate = original.filterByDate;
             this.keyFieldName = original.keyFieldName;
@@ -1872,6 +1962,7 @@ public class ModelFormField {
             this.cache = true;
             this.constraintList = Collections.emptyList();
             this.description = FlexibleStringExpander.getInstance("");
+            this.descriptionNames = Collections.emptySet();
             this.entityName = "";
             this.filterByDate = "";
             this.keyFieldName = "";
@@ -1880,6 +1971,19 @@ public class ModelFormField {
 
         @Override
         public void addOptionValues(List<OptionValue> optionValues, Map<String, Object> context, Delegator delegator) {
+            optionValues.addAll(getOptionValues(context, delegator));
+        }
+
+        /**
+         * Returns the unmodifiable list of the option values read from the entity.
+         * <p>
+         * With <code>cache="true"</code>, when the description only reads the fields of the entity and the values
+         * are not filtered by date, the list is kept in the {@link OptionValuesCache} for the next requests with the
+         * same condition and locale, until a value of the entity changes. Otherwise, the rows of a list or multi form
+         * with the same condition share the list during the render.
+         * </p>
+         */
+        public List<OptionValue> getOptionValues(Map<String, Object> context, Delegator delegator) {
             // first expand any conditions that need expanding based on the current context
             EntityCondition findCondition = null;
             if (UtilValidate.isNotEmpty(this.constraintList)) {
@@ -1899,9 +2003,30 @@ public class ModelFormField {
                 findCondition = EntityCondition.makeCondition(expandedConditionList);
             }
 
+            Locale locale = UtilMisc.ensureLocale(context.get("locale"));
+            ModelEntity modelEntity = delegator.getModelEntity(this.entityName);
+            List<Object> optionValuesKey = Arrays.<Object>asList(delegator.getDelegatorName(), this, findCondition, locale);
+            boolean shared = isShared(modelEntity);
+            Map<List<Object>, List<OptionValue>> renderOptionValues = null;
+            long changeStamp = 0;
+            if (shared) {
+                List<OptionValue> entityOptionValues = optionValuesCache.get(this.entityName, optionValuesKey);
+                if (entityOptionValues != null) {
+                    return entityOptionValues;
+                }
+                // the values changed after this registration remove the values read below
+                WidgetCacheInvalidator.register(delegator);
+                WidgetCacheInvalidator.watch(this.entityName);
+                changeStamp = WidgetCacheInvalidator.getChangeStamp();
+            } else if (isDescriptionRowInvariant(modelEntity)) {
+                renderOptionValues = UtilGenerics.cast(context.get(RENDER_OPTION_VALUES));
+                List<OptionValue> entityOptionValues = renderOptionValues != null ? renderOptionValues.get(optionValuesKey) : null;
+                if (entityOptionValues != null) {
+                    return entityOptionValues;
+                }
+            }
+
             try {
-                Locale locale = UtilMisc.ensureLocale(context.get("locale"));
-                ModelEntity modelEntity = delegator.getModelEntity(this.entityName);
                 Boolean localizedOrderBy = UtilValidate.isNotEmpty(this.orderByList)
                         && ModelUtil.isPotentialLocalizedFields(modelEntity, this.orderByList);
 
@@ -1915,15 +2040,11 @@ public class ModelFormField {
                 }
 
                 // filter-by-date if requested
-                if ("true".equals(this.filterByDate)) {
+                if (isFilteredByDate(modelEntity)) {
                     values = EntityUtil.filterByDate(values, true);
-                } else if (!"false".equals(this.filterByDate)) {
-                    // not explicitly true or false, check to see if has fromDate and thruDate, if so do the filter
-                    if (modelEntity != null && modelEntity.isField("fromDate") && modelEntity.isField("thruDate")) {
-                        values = EntityUtil.filterByDate(values, true);
-                    }
                 }
 
+                List<OptionValue> entityOptionValues = new ArrayList<OptionValue>(values.size());
                 for (GenericValue value : values) {
                     // add key and description with string expansion, ie expanding ${} stuff, passing locale explicitly to expand value string because it won't be found in the Entity
                     MapStack<String> localContext = MapStack.create(context);
@@ -1943,11 +2064,64 @@ public class ModelFormField {
                                         + this.entityName + "].");
                     }
                     String keyFieldValue = keyFieldObject.toString();
-                    optionValues.add(new OptionValue(keyFieldValue, optionDesc));
+                    entityOptionValues.add(new OptionValue(keyFieldValue, optionDesc));
                 }
+                entityOptionValues = Collections.unmodifiableList(entityOptionValues);
+                if (shared) {
+                    optionValuesCache.put(this.entityName, optionValuesKey, entityOptionValues);
+                    // a change done while the values were read may have been seen before they were cached
+                    if (WidgetCacheInvalidator.isChangedSince(Collections.singleton(this.entityName), changeStamp)) {
+                        optionValuesCache.remove(this.entityName, optionValuesKey);
+                    }
+                } else if (renderOptionValues != null) {
+                    renderOptionValues.put(optionValuesKey, entityOptionValues);
+                }
+                return entityOptionValues;
             } catch (GenericEntityException e) {
                 Debug.logError(e, "Error getting entity options in form", module);
             }
+            return Collections.emptyList();
+        }
+
+        private boolean isFilteredByDate(ModelEntity modelEntity) {
+            if ("true".equals(this.filterByDate)) {
+                return true;
+            }
+            // not explicitly true or false, check to see if has fromDate and thruDate, if so do the filter
+            return !"false".equals(this.filterByDate) && modelEntity != null && modelEntity.isField("fromDate")
+                    && modelEntity.isField("thruDate");
+        }
+
+        /**
+         * Returns <code>true</code> if the option values can be kept across requests: they are read through the
+         * entity cache, not filtered by date, and the description only reads the fields of the entity.
+         */
+        private boolean isShared(ModelEntity modelEntity) {
+            if (!this.cache || descriptionNames == null || modelEntity == null || isFilteredByDate(modelEntity)) {
+                return false;
+            }
+            for (String name : descriptionNames) {
+                if (!modelEntity.isField(name)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns <code>true</code> if the description only reads the fields of the entity and the variables fixed
+         * for a render, so the option values only depend on the condition and the locale.
+         */
+        private boolean isDescriptionRowInvariant(ModelEntity modelEntity) {
+            if (descriptionNames == null || modelEntity == null) {
+                return false;
+            }
+            for (String name : descriptionNames) {
+                if (!modelEntity.isField(name) && !UseWhenEvaluator.isRenderInvariantName(name)) {
+                    return false;
+                }
+            }
+            return true;
         }
 
         @Override
@@ -2059,12 +2233,17 @@ public class ModelFormField {
             this.optionSources = Collections.emptyList();
         }
 
+        /** Returns the unmodifiable list of the values of all the options. */
         public List<OptionValue> getAllOptionValues(Map<String, Object> context, Delegator delegator) {
-            List<OptionValue> optionValues = new LinkedList<OptionValue>();
+            if (this.optionSources.size() == 1 && this.optionSources.get(0) instanceof EntityOptions) {
+                // the values of a single entity-options are not copied
+                return ((EntityOptions) this.optionSources.get(0)).getOptionValues(context, delegator);
+            }
+            List<OptionValue> optionValues = new ArrayList<OptionValue>();
             for (OptionSource optionSource : this.optionSources) {
                 optionSource.addOptionValues(optionValues, context, delegator);
             }
-            return optionValues;
+            return Collections.unmodifiableList(optionValues);
         }
 
         public FlexibleStringExpander getNoCurrentSelectedKey() {
@@ -3529,12 +3708,14 @@ public class ModelFormField {
     public static class SubHyperlink {
         private final FlexibleStringExpander description;
         private final FlexibleStringExpander useWhen;
+        private final boolean rowInvariantUseWhen;
         private final Link link;
         private final ModelFormField modelFormField;
 
         public SubHyperlink(Element element, ModelFormField modelFormField) {
             this.description = FlexibleStringExpander.getInstance(element.getAttribute("description"));
             this.useWhen = FlexibleStringExpander.getInstance(element.getAttribute("use-when"));
+            this.rowInvariantUseWhen = UseWhenEvaluator.isRowInvariant(this.useWhen.getOriginal());
             // Backwards compatible support
             element.setAttribute("style", element.getAttribute("link-style"));
             element.setAttribute("url-mode", element.getAttribute("target-type"));
@@ -3545,6 +3726,7 @@ public class ModelFormField {
         public SubHyperlink(SubHyperlink original, ModelFormField modelFormField) {
             this.description = original.description;
             this.useWhen = original.useWhen;
+            this.rowInvariantUseWhen = original.rowInvariantUseWhen;
             this.link = original.link;
             this.modelFormField = modelFormField;
         }
@@ -3694,17 +3876,7 @@ public class ModelFormField {
             String useWhen = this.getUseWhen(context);
             if (UtilValidate.isNotEmpty(useWhen)) {
                 try {
-                    Object retVal = GroovyUtil.eval(StringUtil.convertOperatorSubstitutions(useWhen),context);
-                    boolean condTrue = false;
-
-                    // retVal should be a Boolean, if not something weird is up...
-                    if (retVal instanceof Boolean) {
-                        Boolean boolVal = (Boolean) retVal;
-                        shouldUse = boolVal.booleanValue();
-                    } else {
-                        throw new IllegalArgumentException("Return value from target condition eval was not a Boolean: "
-                                + retVal.getClass().getName() + " [" + retVal + "]");
-                    }
+                    shouldUse = UseWhenEvaluator.evalCondition(this.useWhen, useWhen, this.rowInvariantUseWhen, context, "target condition", null);
                 } catch (CompilationFailedException e) {
                     String errmsg = "Error evaluating Groovy target conditions";
                     Debug.logError(e, errmsg, module);
@@ -3721,15 +3893,8 @@ public class ModelFormField {
         if (UtilValidate.isEmpty(ignoreWhen)) return false;
 
         try {
-            Object retVal = GroovyUtil.eval(StringUtil.convertOperatorSubstitutions(ignoreWhen),context);
-            boolean condTrue = false;
-
-            if (retVal instanceof Boolean) {
-                shouldIgnore =(Boolean) retVal;
-            } else {
-                throw new IllegalArgumentException("Return value from ignore-when condition eval was not a Boolean: "  + (retVal != null ? retVal.getClass().getName() : "null") + " [" + retVal + "] on the field " + this.name + " of form " + this.modelForm.getName());
-            }
-
+            shouldIgnore = UseWhenEvaluator.evalCondition(this.ignoreWhen, ignoreWhen, this.rowInvariantIgnoreWhen, context,
+                    "ignore-when condition", this);
         } catch (CompilationFailedException e) {
             String errMsg = "Error evaluating BeanShell ignore-when condition [" + ignoreWhen + "] on the field " + this.name + " of form " + this.modelForm.getName() + ": " + e.toString();
             Debug.logError(e, errMsg, module);
@@ -65,8 +65,8 @@ public class ModelGrid extends ModelForm {
         String parentResource = gridElement.getAttribute("extends-resource");
         String parentGrid = gridElement.getAttribute("extends");
         if (!parentGrid.isEmpty()) {
-            // check if we have a resource name
-            if (!parentResource.isEmpty()) {
+            // check if we have a resource name, other than the one of this grid
+            if (!parentResource.isEmpty() && !parentResource.equals(getFormLocation())) {
                 try {
                     parentModel = GridFactory.getGridFromLocation(parentResource, parentGrid, entityModelReader, dispatchContext);
                 } catch (Exception e) {
@@ -83,11 +83,17 @@ public class ModelGrid extends ModelForm {
                 }
                 for (Element parentElement : gridElements) {
                     if (parentElement.getAttribute("name").equals(parentGrid)) {
-                        parentModel = GridFactory.createModelGrid(parentElement, entityModelReader, dispatchContext,
-                                parentResource, parentGrid);
+                        parentModel = GridFactory.getModelGrid(parentElement, entityModelReader, dispatchContext, getFormLocation());
                         break;
                     }
                 }
+                if (parentModel == null && WidgetXmlStreamReader.isStreamed(gridElement.getOwnerDocument())) {
+                    // a list form of a streamed forms file
+                    ModelForm parentForm = FormFactory.getSameFileModelForm(gridElement, parentGrid, entityModelReader, dispatchContext, getFormLocation());
+                    if (parentForm instanceof ModelGrid) {
+                        parentModel = parentForm;
+                    }
+                }
                 if (parentModel == null) {
                     Debug.logError("Failed to find parent grid definition '" + parentGrid + "' in same document.", module);
                 }
@@ -18,18 +18,22 @@
  *******************************************************************************/
 package org.apache.ofbiz.widget.model;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.base.util.UtilXml;
+import org.apache.ofbiz.base.util.collections.FlexibleMapAccessor;
 import org.apache.ofbiz.base.util.string.FlexibleStringExpander;
 import org.apache.ofbiz.entity.Delegator;
 import org.apache.ofbiz.entity.GenericEntity;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.transaction.TransactionUtil;
 import org.apache.ofbiz.service.LocalDispatcher;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
+import org.apache.ofbiz.widget.cache.WidgetCachePolicy;
 import org.apache.ofbiz.widget.renderer.ScreenRenderException;
 import org.apache.ofbiz.widget.renderer.ScreenStringRenderer;
 import org.w3c.dom.Element;
@@ -47,6 +51,9 @@ public class ModelScreen extends ModelWidget {
     private final Map<String, ModelScreen> modelScreenMap;
     private final boolean useTransaction;
     private final boolean useCache;
+    private final String cacheKey;
+    private final List<FlexibleMapAccessor<Object>> cacheKeyFields;
+    private final WidgetCachePolicy cachePolicy;
     private final ModelScreenWidget.Section section;
 
     /** XML Constructor */
@@ -57,6 +64,9 @@ public class ModelScreen extends ModelWidget {
         this.modelScreenMap = modelScreenMap;
         this.useTransaction = "true".equals(screenElement.getAttribute("use-transaction"));
         this.useCache = "true".equals(screenElement.getAttribute("use-cache"));
+        this.cacheKey = screenElement.getAttribute("cache-key");
+        this.cacheKeyFields = WidgetOutputCache.parseCacheKey(cacheKey);
+        this.cachePolicy = WidgetCachePolicy.fromElement(screenElement);
 
         // read in the section, which will read all sub-widgets too
         Element sectionElement = UtilXml.firstChildElement(screenElement, "section");
@@ -87,6 +97,22 @@ public class ModelScreen extends ModelWidget {
         return useCache;
     }
 
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * Returns the context fields declared in the <code>cache-key</code> attribute, or an empty list
+     * if the cached output depends on the whole context.
+     */
+    public List<FlexibleMapAccessor<Object>> getCacheKeyFields() {
+        return cacheKeyFields;
+    }
+
+    public WidgetCachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
     public ModelScreenWidget.Section getSection() {
         return section;
     }
@@ -118,6 +144,7 @@ public class ModelScreen extends ModelWidget {
     public void renderScreenString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws ScreenRenderException {
         // make sure the "nullField" object is in there for entity ops
         context.put("nullField", GenericEntity.NULL_FIELD);
+        WidgetCacheInvalidator.recordWidget(this);
 
         // wrap the whole screen rendering in a transaction, should improve performance in querying and such
         Map<String, String> parameters = UtilGenerics.cast(context.get("parameters"));
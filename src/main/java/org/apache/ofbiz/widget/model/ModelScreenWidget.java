@@ -76,6 +76,14 @@ public abstract class ModelScreenWidget extends ModelWidget {
 
     public abstract void renderWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException;
 
+    /**
+     * Renders this widget without going through its output cache. Overridden by the widgets
+     * supporting the <code>use-cache</code> attribute, see {@link WidgetOutputCache}.
+     */
+    protected void renderUncachedWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+        renderWidgetString(writer, context, screenStringRenderer);
+    }
+
     protected static List<ModelScreenWidget> readSubWidgets(ModelScreen modelScreen, List<? extends Element> subElementList) {
         if (subElementList.isEmpty()) {
             return Collections.emptyList();
@@ -121,14 +129,40 @@ public abstract class ModelScreenWidget extends ModelWidget {
 
         /** This is a lot like the ScreenRenderer class and returns an empty String so it can be used more easily with FreeMarker */
         public String render(String sectionName) throws GeneralException, IOException {
+            return render(sectionName, this.writer);
+        }
+
+        /** Renders the section to <code>writer</code> instead of the writer of the decorator screen. */
+        public String render(String sectionName, Appendable writer) throws GeneralException, IOException {
             ModelScreenWidget section = sectionMap.get(sectionName);
             // if no section by that name, write nothing
             if (section != null) {
-                section.renderWidgetString(this.writer, this.context, this.screenStringRenderer);
+                section.renderWidgetString(writer, this.context, this.screenStringRenderer);
             }
             return "";
         }
 
+        /**
+         * Returns the location and name of the screens supplying the sections: the screen calling the decorator,
+         * then the screens supplying the sections it includes itself from its own decorator, if any.
+         */
+        public String getProviderName() {
+            StringBuilder providerName = new StringBuilder();
+            SectionsRenderer sections = this;
+            while (sections != null) {
+                if (!sections.sectionMap.isEmpty()) {
+                    ModelScreen providerScreen = sections.sectionMap.values().iterator().next().getModelScreen();
+                    if (providerName.length() > 0) {
+                        providerName.append("/");
+                    }
+                    providerName.append(providerScreen.getSourceLocation()).append(":").append(providerScreen.getName());
+                }
+                Object outerSections = sections.context.get("sections");
+                sections = outerSections instanceof SectionsRenderer && outerSections != sections ? (SectionsRenderer) outerSections : null;
+            }
+            return providerName.toString();
+        }
+
         @Override
         public int size() {
             return sectionMap.size();
@@ -207,6 +241,7 @@ public abstract class ModelScreenWidget extends ModelWidget {
         private final List<ModelScreenWidget> subWidgets;
         private final List<ModelScreenWidget> failWidgets;
         private final boolean isMainSection;
+        private final boolean parallel;
 
         public Section(ModelScreen modelScreen, Element sectionElement) {
             this(modelScreen, sectionElement, false);
@@ -250,6 +285,7 @@ public abstract class ModelScreenWidget extends ModelWidget {
                 this.failWidgets = Collections.emptyList();
             }
             this.isMainSection = isMainSection;
+            this.parallel = "true".equals(sectionElement.getAttribute("parallel"));
         }
 
         @Override
@@ -259,9 +295,14 @@ public abstract class ModelScreenWidget extends ModelWidget {
 
         @Override
         public void renderWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
-            // check the condition, if there is one
+            // a section prepared by a parallel parent already checked its condition and ran its actions in its own scope
+            ParallelSections.Prepared prepared = ParallelSections.take(this, context);
             boolean condTrue = true;
-            if (this.condition != null) {
+            if (prepared != null) {
+                context = prepared.context;
+                condTrue = prepared.condTrue;
+            } else if (this.condition != null) {
+                // check the condition, if there is one
                 if (!this.condition.eval(context)) {
                     condTrue = false;
                 }
@@ -270,14 +311,25 @@ public abstract class ModelScreenWidget extends ModelWidget {
             // if condition does not exist or evals to true run actions and render widgets, otherwise render fail-widgets
             if (condTrue) {
                 // run the actions only if true
-                AbstractModelAction.runSubActions(this.actions, context);
+                if (prepared == null) {
+                    AbstractModelAction.runSubActions(this.actions, context);
+                }
 
                 try {
                     // section by definition do not themselves do anything, so this method will generally do nothing, but we'll call it anyway
                     screenStringRenderer.renderSectionBegin(writer, context, this);
 
                     // render sub-widgets
-                    renderSubWidgetsString(this.subWidgets, writer, context, screenStringRenderer);
+                    if (this.parallel) {
+                        Object previousSections = ParallelSections.begin(this.subWidgets, context);
+                        try {
+                            renderSubWidgetsString(this.subWidgets, writer, context, screenStringRenderer);
+                        } finally {
+                            ParallelSections.end(context, previousSections);
+                        }
+                    } else {
+                        renderSubWidgetsString(this.subWidgets, writer, context, screenStringRenderer);
+                    }
 
                     screenStringRenderer.renderSectionEnd(writer, context, this);
                 } catch (IOException e) {
@@ -328,6 +380,10 @@ public abstract class ModelScreenWidget extends ModelWidget {
             return isMainSection;
         }
 
+        public boolean isParallel() {
+            return parallel;
+        }
+
         public ModelCondition getCondition() {
             return condition;
         }
@@ -338,6 +394,7 @@ public abstract class ModelScreenWidget extends ModelWidget {
         private final FlexibleStringExpander idExdr;
         private final FlexibleStringExpander styleExdr;
         private final List<Column> columns;
+        private final boolean parallel;
 
         public ColumnContainer(ModelScreen modelScreen, Element containerElement) {
             super(modelScreen, containerElement);
@@ -349,6 +406,7 @@ public abstract class ModelScreenWidget extends ModelWidget {
                 columns.add(new Column(modelScreen, element));
             }
             this.columns = Collections.unmodifiableList(columns);
+            this.parallel = "true".equals(containerElement.getAttribute("parallel"));
         }
 
         @Override
@@ -358,12 +416,24 @@ public abstract class ModelScreenWidget extends ModelWidget {
 
         @Override
         public void renderWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+            Object previousSections = null;
+            if (this.parallel) {
+                List<ModelScreenWidget> columnWidgets = new ArrayList<ModelScreenWidget>();
+                for (Column column : this.columns) {
+                    columnWidgets.addAll(column.getSubWidgets());
+                }
+                previousSections = ParallelSections.begin(columnWidgets, context);
+            }
             try {
                 screenStringRenderer.renderColumnContainer(writer, context, this);
             } catch (IOException e) {
                 String errMsg = "Error rendering container in screen named [" + getModelScreen().getName() + "]: " + e.toString();
                 Debug.logError(e, errMsg, module);
                 throw new RuntimeException(errMsg);
+            } finally {
+                if (this.parallel) {
+                    ParallelSections.end(context, previousSections);
+                }
             }
         }
 
@@ -371,6 +441,10 @@ public abstract class ModelScreenWidget extends ModelWidget {
             return this.columns;
         }
 
+        public boolean isParallel() {
+            return parallel;
+        }
+
         public String getId(Map<String, Object> context) {
             return this.idExdr.expandString(context);
         }
@@ -434,6 +508,8 @@ public abstract class ModelScreenWidget extends ModelWidget {
         private final FlexibleStringExpander autoUpdateTargetExdr;
         private final FlexibleStringExpander autoUpdateInterval;
         private final List<ModelScreenWidget> subWidgets;
+        private final WidgetOutputCache outputCache;
+        private final boolean parallel;
 
         public Container(ModelScreen modelScreen, Element containerElement) {
             super(modelScreen, containerElement);
@@ -448,10 +524,25 @@ public abstract class ModelScreenWidget extends ModelWidget {
             // read sub-widgets
             List<? extends Element> subElementList = UtilXml.childElementList(containerElement);
             this.subWidgets = ModelScreenWidget.readSubWidgets(getModelScreen(), subElementList);
+            this.outputCache = WidgetOutputCache.fromElement(this, containerElement);
+            this.parallel = "true".equals(containerElement.getAttribute("parallel"));
         }
 
         @Override
         public void renderWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+            if (this.outputCache != null) {
+                this.outputCache.renderWidgetString(this, writer, context, screenStringRenderer);
+            } else {
+                renderUncachedWidgetString(writer, context, screenStringRenderer);
+            }
+        }
+
+        @Override
+        protected void renderUncachedWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+            Object previousSections = null;
+            if (this.parallel) {
+                previousSections = ParallelSections.begin(this.subWidgets, context);
+            }
             try {
                 screenStringRenderer.renderContainerBegin(writer, context, this);
 
@@ -463,9 +554,17 @@ public abstract class ModelScreenWidget extends ModelWidget {
                 String errMsg = "Error rendering container in screen named [" + getModelScreen().getName() + "]: " + e.toString();
                 Debug.logError(e, errMsg, module);
                 throw new RuntimeException(errMsg);
+            } finally {
+                if (this.parallel) {
+                    ParallelSections.end(context, previousSections);
+                }
             }
         }
 
+        public boolean isParallel() {
+            return parallel;
+        }
+
         public String getId(Map<String, Object> context) {
             return this.idExdr.expandString(context);
         }
@@ -486,6 +585,10 @@ public abstract class ModelScreenWidget extends ModelWidget {
             return subWidgets;
         }
 
+        public WidgetOutputCache getOutputCache() {
+            return outputCache;
+        }
+
         @Override
         public void accept(ModelWidgetVisitor visitor) throws Exception {
             visitor.visit(this);
@@ -520,6 +623,7 @@ public abstract class ModelScreenWidget extends ModelWidget {
         private final boolean saveCollapsed;
         private final boolean padded;
         private final List<ModelScreenWidget> subWidgets;
+        private final WidgetOutputCache outputCache;
 
         public Screenlet(ModelScreen modelScreen, Element screenletElement) {
             super(modelScreen, screenletElement);
@@ -579,10 +683,20 @@ public abstract class ModelScreenWidget extends ModelWidget {
             this.subWidgets = Collections.unmodifiableList(subWidgets);
             this.navigationForm = navigationForm;
             this.padded = padded;
+            this.outputCache = WidgetOutputCache.fromElement(this, screenletElement);
         }
 
         @Override
         public void renderWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+            if (this.outputCache != null) {
+                this.outputCache.renderWidgetString(this, writer, context, screenStringRenderer);
+            } else {
+                renderUncachedWidgetString(writer, context, screenStringRenderer);
+            }
+        }
+
+        @Override
+        protected void renderUncachedWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
             boolean collapsed = getInitiallyCollapsed(context);
             if (this.collapsible) {
                 String preferenceKey = getPreferenceKey(context) + "_collapsed";
@@ -665,6 +779,10 @@ public abstract class ModelScreenWidget extends ModelWidget {
             return this.tabMenu;
         }
 
+        public WidgetOutputCache getOutputCache() {
+            return outputCache;
+        }
+
         @Override
         public void accept(ModelWidgetVisitor visitor) throws Exception {
             visitor.visit(this);
@@ -738,16 +856,32 @@ public abstract class ModelScreenWidget extends ModelWidget {
         private final FlexibleStringExpander nameExdr;
         private final FlexibleStringExpander locationExdr;
         private final FlexibleStringExpander shareScopeExdr;
+        private final WidgetOutputCache outputCache;
 
         public IncludeScreen(ModelScreen modelScreen, Element includeScreenElement) {
             super(modelScreen, includeScreenElement);
             this.nameExdr = FlexibleStringExpander.getInstance(includeScreenElement.getAttribute("name"));
             this.locationExdr = FlexibleStringExpander.getInstance(includeScreenElement.getAttribute("location"));
             this.shareScopeExdr = FlexibleStringExpander.getInstance(includeScreenElement.getAttribute("share-scope"));
+            this.outputCache = WidgetOutputCache.fromElement(this, includeScreenElement);
         }
 
         @Override
         public void renderWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+            if (this.outputCache != null) {
+                // the name and location may be expanded from the context: the output is cached per included screen
+                String location = this.getLocation(context);
+                if (location.isEmpty()) {
+                    location = getModelScreen().getSourceLocation();
+                }
+                this.outputCache.renderWidgetString(this, location + "#" + this.getName(context), writer, context, screenStringRenderer);
+            } else {
+                renderUncachedWidgetString(writer, context, screenStringRenderer);
+            }
+        }
+
+        @Override
+        protected void renderUncachedWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
             // if we are not sharing the scope, protect it using the MapStack
             boolean protectScope = !shareScope(context);
             if (protectScope) {
@@ -814,6 +948,10 @@ public abstract class ModelScreenWidget extends ModelWidget {
         public FlexibleStringExpander getShareScopeExdr() {
             return shareScopeExdr;
         }
+
+        public WidgetOutputCache getOutputCache() {
+            return outputCache;
+        }
     }
 
     public static final class DecoratorScreen extends ModelScreenWidget {
@@ -918,13 +1056,28 @@ public abstract class ModelScreenWidget extends ModelWidget {
 
     public static final class DecoratorSectionInclude extends ModelScreenWidget {
         public static final String TAG_NAME = "decorator-section-include";
+        private final WidgetOutputCache outputCache;
 
         public DecoratorSectionInclude(ModelScreen modelScreen, Element decoratorSectionElement) {
             super(modelScreen, decoratorSectionElement);
+            this.outputCache = WidgetOutputCache.fromElement(this, decoratorSectionElement);
         }
 
         @Override
         public void renderWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+            Object sections = context.get("sections");
+            Map<String, ? extends Object> preRenderedContent = UtilGenerics.checkMap(context.get("preRenderedContent"));
+            if (this.outputCache != null && sections instanceof SectionsRenderer
+                    && (preRenderedContent == null || !preRenderedContent.containsKey(getName()))) {
+                // the same decorator includes the sections of many screens: the output is cached per screen supplying the section
+                this.outputCache.renderWidgetString(this, ((SectionsRenderer) sections).getProviderName(), writer, context, screenStringRenderer);
+            } else {
+                renderUncachedWidgetString(writer, context, screenStringRenderer);
+            }
+        }
+
+        @Override
+        protected void renderUncachedWidgetString(Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
             Map<String, ? extends Object> preRenderedContent = UtilGenerics.checkMap(context.get("preRenderedContent"));
             if (preRenderedContent != null && preRenderedContent.containsKey(getName())) {
                 try {
@@ -940,11 +1093,15 @@ public abstract class ModelScreenWidget extends ModelWidget {
                 if (sections == null) {
                     Debug.logWarning("In decorator-section-include could not find sections object in the context, not rendering section with name [" + getName() + "]", module);
                 } else {
-                    sections.render(getName());
+                    sections.render(getName(), writer);
                 }
             }
         }
 
+        public WidgetOutputCache getOutputCache() {
+            return outputCache;
+        }
+
         @Override
         public void accept(ModelWidgetVisitor visitor) throws Exception {
             visitor.visit(this);
@@ -18,10 +18,7 @@
  *******************************************************************************/
 package org.apache.ofbiz.widget.model;
 
-import java.util.List;
-
 import org.apache.ofbiz.base.util.Debug;
-import org.apache.ofbiz.base.util.UtilXml;
 import org.apache.ofbiz.entity.model.ModelReader;
 import org.apache.ofbiz.service.DispatchContext;
 import org.w3c.dom.Element;
@@ -66,8 +63,8 @@ public class ModelSingleForm extends ModelForm {
         String parentResource = formElement.getAttribute("extends-resource");
         String parentForm = formElement.getAttribute("extends");
         if (!parentForm.isEmpty()) {
-            // check if we have a resource name
-            if (!parentResource.isEmpty()) {
+            // check if we have a resource name, other than the one of this form
+            if (!parentResource.isEmpty() && !parentResource.equals(getFormLocation())) {
                 try {
                     parent = FormFactory.getFormFromLocation(parentResource, parentForm, entityModelReader, dispatchContext);
                 } catch (Exception e) {
@@ -76,17 +73,7 @@ public class ModelSingleForm extends ModelForm {
                 }
             } else if (!parentForm.equals(formElement.getAttribute("name"))) {
                 // try to find a form definition in the same file
-                Element rootElement = formElement.getOwnerDocument().getDocumentElement();
-                List<? extends Element> formElements = UtilXml.childElementList(rootElement, "form");
-                //Uncomment below to add support for abstract forms
-                //formElements.addAll(UtilXml.childElementList(rootElement, "abstract-form"));
-                for (Element parentElement : formElements) {
-                    if (parentElement.getAttribute("name").equals(parentForm)) {
-                        parent = FormFactory.createModelForm(parentElement, entityModelReader, dispatchContext, parentResource,
-                                parentForm);
-                        break;
-                    }
-                }
+                parent = FormFactory.getSameFileModelForm(formElement, parentForm, entityModelReader, dispatchContext, getFormLocation());
                 if (parent == null) {
                     Debug.logError("Failed to find parent form definition '" + parentForm + "' in same document.", module);
                 }
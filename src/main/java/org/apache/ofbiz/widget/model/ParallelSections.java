@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.GeneralException;
+import org.apache.ofbiz.base.util.UtilGenerics;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.collections.MapStack;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericDelegator;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.widget.WidgetWorker;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
+import org.apache.ofbiz.widget.model.ModelScreenWidget.Section;
+
+/**
+ * Widget Library - Runs the conditions and actions of the child sections of a <code>parallel="true"</code>
+ * section, container or column-container concurrently.
+ * <p>
+ * The sections are prepared on a pool of <code>widget.parallel.threads</code> threads, each one in its own scope
+ * pushed on the context. The pool has no queue: when all its threads are busy, a section is prepared on the request
+ * thread, so a request never waits for the sections of the other requests. The user and session identifiers of
+ * the delegator and the context class loader of the request thread are set on the pool thread preparing a section. The widget then renders its children in document order on the request thread: a prepared
+ * section renders its widgets with the scope and the condition result of its preparation, instead of running its
+ * actions again. Only the actions run concurrently: the screen renderers are not thread-safe, and number the
+ * elements they render in document order.
+ * </p>
+ * <p>
+ * The maps shared by all the sections, <code>globalContext</code> and <code>parameters</code>, are copied for each
+ * section while it is prepared: the values its actions set there are copied to the shared maps once all the
+ * sections are prepared, in document order, and the section then renders with the shared maps.
+ * </p>
+ * <p>
+ * The sections are prepared one after the other on the request thread when it runs in a transaction, as the pool
+ * threads would not see its uncommitted changes nor roll back with it, and while a cached output is rendered, as
+ * the entities read by the other threads would not be recorded. A screen renders in a transaction unless it has
+ * <code>use-transaction="false"</code>, as have all the screens and decorators enclosing it.
+ * </p>
+ */
+public final class ParallelSections {
+
+    public static final String module = ParallelSections.class.getName();
+    /** The context entry of the sections prepared for the widget being rendered. */
+    private static final String PREPARED_SECTIONS = "_PREPARED_SECTIONS_";
+    private static final ExecutorService executor = createExecutor();
+    /** Set on the pool threads: a section prepared there prepares its own children one after the other. */
+    private static final ThreadLocal<Boolean> preparing = new ThreadLocal<Boolean>();
+    /** The context entries holding maps shared by the sections, copied for the preparation of each section. */
+    private static final String[] sharedMapNames = { "globalContext", "parameters" };
+
+    private ParallelSections() {
+    }
+
+    private static ExecutorService createExecutor() {
+        int threads = (int) UtilProperties.getPropertyNumber("widget", "widget.parallel.threads", 0);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors() * 2;
+        }
+        // no queue: a section no thread is free for is prepared by the request thread
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "widget-parallel-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Prepares the sections having a condition or actions among <code>widgets</code>, and makes them available to
+     * their rendering. Returns the previous prepared sections of the context, to be passed to {@link #end(Map, Object)}
+     * once the widgets are rendered.
+     */
+    public static Object begin(List<? extends ModelScreenWidget> widgets, Map<String, Object> context) throws GeneralException {
+        Object previousSections = context.get(PREPARED_SECTIONS);
+        List<Section> sections = new ArrayList<Section>();
+        for (ModelScreenWidget widget : widgets) {
+            if (widget instanceof Section) {
+                Section section = (Section) widget;
+                if (section.getCondition() != null || !section.getActions().isEmpty()) {
+                    sections.add(section);
+                }
+            }
+        }
+        if (sections.size() < 2 || Boolean.TRUE.equals(preparing.get()) || WidgetCacheInvalidator.isRecording()
+                || TransactionUtil.isTransactionInPlace()) {
+            return previousSections;
+        }
+        // read-only snapshots of the shared maps, each task makes its own copies from them
+        Map<String, Map<String, Object>> sharedMaps = new HashMap<String, Map<String, Object>>();
+        for (String name : sharedMapNames) {
+            Object sharedMap = context.get(name);
+            if (sharedMap instanceof Map<?, ?>) {
+                sharedMaps.put(name, new HashMap<String, Object>(UtilGenerics.<String, Object>checkMap(sharedMap)));
+            }
+        }
+        List<Callable<Prepared>> prepareTasks = new ArrayList<Callable<Prepared>>(sections.size());
+        for (Section section : sections) {
+            prepareTasks.add(new PrepareTask(section, context, sharedMaps));
+        }
+        Map<Section, Prepared> preparedSections = new HashMap<Section, Prepared>();
+        try {
+            List<Future<Prepared>> results = executor.invokeAll(prepareTasks);
+            for (int i = 0; i < results.size(); i++) {
+                Prepared prepared = getResult(results.get(i), sections.get(i));
+                copySharedMapChanges(prepared, context, sharedMaps);
+                preparedSections.put(sections.get(i), prepared);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("Interrupted while preparing the sections of a parallel widget", e);
+        }
+        context.put(PREPARED_SECTIONS, preparedSections);
+        return previousSections;
+    }
+
+    /**
+     * Copies the values set by the actions of a prepared section in its copies of the shared maps to the maps of
+     * <code>context</code>, and makes the section render with the maps of <code>context</code>.
+     */
+    private static void copySharedMapChanges(Prepared prepared, Map<String, Object> context, Map<String, Map<String, Object>> sharedMaps) {
+        for (Map.Entry<String, Map<String, Object>> sharedMapEntry : sharedMaps.entrySet()) {
+            String name = sharedMapEntry.getKey();
+            Map<String, Object> original = sharedMapEntry.getValue();
+            Map<String, Object> copy = UtilGenerics.checkMap(prepared.context.remove(name));
+            Map<String, Object> sharedMap = UtilGenerics.checkMap(context.get(name));
+            if (copy == null || sharedMap == null) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : copy.entrySet()) {
+                String key = entry.getKey();
+                if (!original.containsKey(key) || original.get(key) != entry.getValue()) {
+                    sharedMap.put(key, entry.getValue());
+                }
+            }
+        }
+    }
+
+    /** Restores the prepared sections of the context returned by {@link #begin(List, Map)}. */
+    public static void end(Map<String, Object> context, Object previousSections) {
+        if (previousSections != null) {
+            context.put(PREPARED_SECTIONS, previousSections);
+        } else {
+            context.remove(PREPARED_SECTIONS);
+        }
+    }
+
+    /** Returns the preparation of <code>section</code> and removes it from the context, or <code>null</code> if it was not prepared. */
+    static Prepared take(Section section, Map<String, Object> context) {
+        Map<Section, Prepared> preparedSections = UtilGenerics.cast(context.get(PREPARED_SECTIONS));
+        return preparedSections != null ? preparedSections.remove(section) : null;
+    }
+
+    private static Prepared getResult(Future<Prepared> result, Section section) throws GeneralException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException("Interrupted while preparing the section [" + section.getName() + "]", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GeneralException) {
+                throw (GeneralException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new GeneralException("Error preparing the section [" + section.getName() + "] in screen named ["
+                    + section.getModelScreen().getName() + "]", cause);
+        }
+    }
+
+    /** The scope of a prepared section and the result of its condition. */
+    static final class Prepared {
+        final MapStack<String> context;
+        final boolean condTrue;
+
+        private Prepared(MapStack<String> context, boolean condTrue) {
+            this.context = context;
+            this.condTrue = condTrue;
+        }
+    }
+
+    private static final class PrepareTask implements Callable<Prepared> {
+        private final Section section;
+        private final Map<String, Object> context;
+        private final Map<String, Map<String, Object>> sharedMaps;
+        // the thread state of the request thread, read by the entity audit and the class loading of the actions
+        private final String userIdentifier;
+        private final String sessionIdentifier;
+        private final ClassLoader contextClassLoader;
+
+        private PrepareTask(Section section, Map<String, Object> context, Map<String, Map<String, Object>> sharedMaps) {
+            this.section = section;
+            this.context = context;
+            this.sharedMaps = sharedMaps;
+            Delegator delegator = WidgetWorker.getDelegator(context);
+            this.userIdentifier = delegator != null ? delegator.getCurrentUserIdentifier() : null;
+            this.sessionIdentifier = delegator != null ? delegator.getCurrentSessionIdentifier() : null;
+            this.contextClassLoader = Thread.currentThread().getContextClassLoader();
+        }
+
+        @Override
+        public Prepared call() throws Exception {
+            preparing.set(Boolean.TRUE);
+            Thread thread = Thread.currentThread();
+            ClassLoader previousClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(contextClassLoader);
+            if (userIdentifier != null) {
+                GenericDelegator.pushUserIdentifier(userIdentifier);
+            }
+            if (sessionIdentifier != null) {
+                GenericDelegator.pushSessionIdentifier(sessionIdentifier);
+            }
+            try {
+                // the scope shares the maps of the context: the ones written by the actions are replaced by copies
+                MapStack<String> scope = MapStack.create(context);
+                scope.push();
+                for (Map.Entry<String, Map<String, Object>> sharedMapEntry : sharedMaps.entrySet()) {
+                    scope.put(sharedMapEntry.getKey(), new HashMap<String, Object>(sharedMapEntry.getValue()));
+                }
+                boolean condTrue = section.getCondition() == null || section.getCondition().eval(scope);
+                if (condTrue) {
+                    AbstractModelAction.runSubActions(section.getActions(), scope);
+                }
+                return new Prepared(scope, condTrue);
+            } catch (Exception e) {
+                Debug.logError("Error preparing the section [" + section.getName() + "] in screen named [" + section.getModelScreen().getName()
+                        + "]: " + e.toString(), module);
+                throw e;
+            } finally {
+                if (sessionIdentifier != null) {
+                    GenericDelegator.popSessionIdentifier();
+                }
+                if (userIdentifier != null) {
+                    GenericDelegator.popUserIdentifier();
+                }
+                thread.setContextClassLoader(previousClassLoader);
+                preparing.remove();
+            }
+        }
+    }
+}
@@ -23,15 +23,19 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
 
 import org.apache.ofbiz.base.location.FlexibleLocation;
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.GeneralException;
+import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilHttp;
+import org.apache.ofbiz.base.util.UtilProperties;
 import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.base.util.UtilXml;
 import org.apache.ofbiz.base.util.cache.UtilCache;
@@ -50,6 +54,9 @@ public class ScreenFactory {
 
     public static final UtilCache<String, Map<String, ModelScreen>> screenLocationCache = UtilCache.createUtilCache("widget.screen.locationResource", 0, 0, false);
     public static final UtilCache<String, Map<String, ModelScreen>> screenWebappCache = UtilCache.createUtilCache("widget.screen.webappResource", 0, 0, false);
+    private static final boolean streamingEnabled = "true".equals(UtilProperties.getPropertyValue("widget", "widget.xml.streaming", "false"));
+    private static final WidgetModelLoader<Map<String, ModelScreen>> screenLocationLoader = new WidgetModelLoader<Map<String, ModelScreen>>("widget.screen.locationResource", screenLocationCache);
+    private static final WidgetModelLoader<Map<String, ModelScreen>> screenWebappLoader = new WidgetModelLoader<Map<String, ModelScreen>>("widget.screen.webappResource", screenWebappCache);
 
     public static boolean isCombinedName(String combinedName) {
         int numSignIndex = combinedName.lastIndexOf("#");
@@ -105,27 +112,34 @@ public class ScreenFactory {
         return modelScreen;
     }
 
-    public static Map<String, ModelScreen> getScreensFromLocation(String resourceName)
+    public static Map<String, ModelScreen> getScreensFromLocation(final String resourceName)
             throws IOException, SAXException, ParserConfigurationException {
-        Map<String, ModelScreen> modelScreenMap = screenLocationCache.get(resourceName);
-        if (modelScreenMap == null) {
-            synchronized (ScreenFactory.class) {
-                modelScreenMap = screenLocationCache.get(resourceName);
-                if (modelScreenMap == null) {
-                    long startTime = System.currentTimeMillis();
-                    URL screenFileUrl = null;
-                    screenFileUrl = FlexibleLocation.resolveLocation(resourceName);
-                    if (screenFileUrl == null) {
-                        throw new IllegalArgumentException("Could not resolve location to URL: " + resourceName);
+        // each resource is read by one thread, the threads reading other resources are not blocked
+        Map<String, ModelScreen> modelScreenMap = screenLocationLoader.get(resourceName, new Callable<Map<String, ModelScreen>>() {
+            @Override
+            public Map<String, ModelScreen> call() throws Exception {
+                long startTime = System.currentTimeMillis();
+                URL screenFileUrl = FlexibleLocation.resolveLocation(resourceName);
+                if (screenFileUrl == null) {
+                    throw new IllegalArgumentException("Could not resolve location to URL: " + resourceName);
+                }
+                if (WidgetModelSnapshot.isEnabled()) {
+                    Map<String, ModelScreen> modelScreenMap = UtilGenerics.cast(WidgetModelSnapshot.read(resourceName, screenFileUrl));
+                    if (modelScreenMap != null) {
+                        double totalSeconds = (System.currentTimeMillis() - startTime)/1000.0;
+                        Debug.logInfo("Got " + modelScreenMap.size() + " screens in " + totalSeconds + "s from the snapshot of: " + screenFileUrl.toExternalForm(), module);
+                        return modelScreenMap;
                     }
-                    Document screenFileDoc = UtilXml.readXmlDocument(screenFileUrl, true, true);
-                    modelScreenMap = readScreenDocument(screenFileDoc, resourceName);
-                    screenLocationCache.put(resourceName, modelScreenMap);
-                    double totalSeconds = (System.currentTimeMillis() - startTime)/1000.0;
-                    Debug.logInfo("Got " + modelScreenMap.size() + " screens in " + totalSeconds + "s from: " + screenFileUrl.toExternalForm(), module);
                 }
+                Map<String, ModelScreen> modelScreenMap = readScreenFile(screenFileUrl, resourceName);
+                double totalSeconds = (System.currentTimeMillis() - startTime)/1000.0;
+                Debug.logInfo("Got " + modelScreenMap.size() + " screens in " + totalSeconds + "s from: " + screenFileUrl.toExternalForm(), module);
+                if (WidgetModelSnapshot.isEnabled()) {
+                    WidgetModelSnapshot.write(resourceName, screenFileUrl, modelScreenMap);
+                }
+                return modelScreenMap;
             }
-        }
+        });
 
         if (modelScreenMap.isEmpty()) {
             throw new IllegalArgumentException("Could not find screen file with name [" + resourceName + "]");
@@ -133,26 +147,20 @@ public class ScreenFactory {
         return modelScreenMap;
     }
 
-    public static ModelScreen getScreenFromWebappContext(String resourceName, String screenName, HttpServletRequest request)
+    public static ModelScreen getScreenFromWebappContext(final String resourceName, String screenName, final HttpServletRequest request)
             throws IOException, SAXException, ParserConfigurationException {
         String webappName = UtilHttp.getApplicationName(request);
         String cacheKey = webappName + "::" + resourceName;
 
+        Map<String, ModelScreen> modelScreenMap = screenWebappLoader.get(cacheKey, new Callable<Map<String, ModelScreen>>() {
+            @Override
+            public Map<String, ModelScreen> call() throws Exception {
+                ServletContext servletContext = (ServletContext) request.getAttribute("servletContext");
 
-        Map<String, ModelScreen> modelScreenMap = screenWebappCache.get(cacheKey);
-        if (modelScreenMap == null) {
-            synchronized (ScreenFactory.class) {
-                modelScreenMap = screenWebappCache.get(cacheKey);
-                if (modelScreenMap == null) {
-                    ServletContext servletContext = (ServletContext) request.getAttribute("servletContext");
-
-                    URL screenFileUrl = servletContext.getResource(resourceName);
-                    Document screenFileDoc = UtilXml.readXmlDocument(screenFileUrl, true, true);
-                    modelScreenMap = readScreenDocument(screenFileDoc, resourceName);
-                    screenWebappCache.put(cacheKey, modelScreenMap);
-                }
+                URL screenFileUrl = servletContext.getResource(resourceName);
+                return readScreenFile(screenFileUrl, resourceName);
             }
-        }
+        });
 
         ModelScreen modelScreen = modelScreenMap.get(screenName);
         if (modelScreen == null) {
@@ -161,6 +169,43 @@ public class ScreenFactory {
         return modelScreen;
     }
 
+    /**
+     * Reads the screens of the file at <code>screenFileUrl</code>. With <code>widget.xml.streaming=true</code>
+     * in widget.properties, the screens are read one at a time, see {@link #streamScreenFile(URL, Schema, String)}.
+     */
+    public static Map<String, ModelScreen> readScreenFile(URL screenFileUrl, String sourceLocation)
+            throws IOException, SAXException, ParserConfigurationException {
+        Schema screenSchema = null;
+        if (streamingEnabled) {
+            try {
+                screenSchema = WidgetXmlStreamReader.getSchema("widget-screen.xsd");
+            } catch (SAXException e) {
+                Debug.logWarning(e, "Could not read the screen schema, reading [" + sourceLocation + "] without streaming", module);
+            }
+        }
+        if (screenSchema == null) {
+            Document screenFileDoc = UtilXml.readXmlDocument(screenFileUrl, true, true);
+            return readScreenDocument(screenFileDoc, sourceLocation);
+        }
+        return streamScreenFile(screenFileUrl, screenSchema, sourceLocation);
+    }
+
+    /**
+     * Reads the screens of the file at <code>screenFileUrl</code> one at a time with a {@link WidgetXmlStreamReader},
+     * each validated against <code>screenSchema</code> so its attributes get their schema default values.
+     */
+    public static Map<String, ModelScreen> streamScreenFile(URL screenFileUrl, Schema screenSchema, final String sourceLocation) throws IOException, SAXException {
+        final Map<String, ModelScreen> modelScreenMap = new HashMap<String, ModelScreen>();
+        WidgetXmlStreamReader.readElements(screenFileUrl, "screens", "screen", screenSchema, new WidgetXmlStreamReader.ElementHandler() {
+            @Override
+            public void handleElement(Element screenElement) {
+                ModelScreen modelScreen = new ModelScreen(screenElement, modelScreenMap, sourceLocation);
+                modelScreenMap.put(modelScreen.getName(), modelScreen);
+            }
+        });
+        return modelScreenMap;
+    }
+
     public static Map<String, ModelScreen> readScreenDocument(Document screenFileDoc, String sourceLocation) {
         Map<String, ModelScreen> modelScreenMap = new HashMap<String, ModelScreen>();
         if (screenFileDoc != null) {
@@ -44,7 +44,7 @@ public class TreeFactory {
 
     public static final UtilCache<String, Map<String, ModelTree>> treeLocationCache = UtilCache.createUtilCache("widget.tree.locationResource", 0, 0, false);
 
-    public static ModelTree getTreeFromLocation(String resourceName, String treeName, Delegator delegator, LocalDispatcher dispatcher)
+    public static Map<String, ModelTree> getTreesFromLocation(String resourceName, Delegator delegator, LocalDispatcher dispatcher)
             throws IOException, SAXException, ParserConfigurationException {
         Map<String, ModelTree> modelTreeMap = treeLocationCache.get(resourceName);
         if (modelTreeMap == null) {
@@ -53,6 +53,12 @@ public class TreeFactory {
             modelTreeMap = readTreeDocument(treeFileDoc, delegator, dispatcher, resourceName);
             modelTreeMap = treeLocationCache.putIfAbsentAndGet(resourceName, modelTreeMap);
         }
+        return modelTreeMap;
+    }
+
+    public static ModelTree getTreeFromLocation(String resourceName, String treeName, Delegator delegator, LocalDispatcher dispatcher)
+            throws IOException, SAXException, ParserConfigurationException {
+        Map<String, ModelTree> modelTreeMap = getTreesFromLocation(resourceName, delegator, dispatcher);
         ModelTree modelTree = modelTreeMap.get(treeName);
         if (modelTree == null) {
             throw new IllegalArgumentException("Could not find tree with name [" + treeName + "] in class resource ["
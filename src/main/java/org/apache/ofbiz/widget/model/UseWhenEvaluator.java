@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.model;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.StringUtil;
+import org.apache.ofbiz.base.util.UtilGenerics;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * Widget Library - Evaluates the Groovy conditions of the forms: <code>use-when</code>, <code>ignore-when</code>,
+ * and the conditions of the alternate row styles and targets.
+ * <p>
+ * Each expression is compiled once into a script class, kept in the <code>widget.useWhen.scriptClass</code>
+ * cache, which keeps the 1000 most recently used classes. An evaluation creates an instance of that class bound to the context, so evaluating a condition for
+ * each row of a list form doesn't compile it again. The context is not copied: a variable missing from the
+ * context is <code>null</code>, and the variables set by the expression are local to the evaluation, as with
+ * <code>GroovyUtil.eval</code>.
+ * </p>
+ * <p>
+ * A condition reading only the variables fixed for a render (<code>parameters</code>, <code>userLogin</code>,
+ * <code>security</code>...) is row-invariant: while the rows of a list form are rendered, its result is kept
+ * in the map found under {@link #ROW_INVARIANT_RESULTS} in the context, and reused for the following rows.
+ * </p>
+ */
+public final class UseWhenEvaluator {
+
+    public static final String module = UseWhenEvaluator.class.getName();
+    /** The context entry holding the results of the row-invariant conditions, while the rows of a list form are rendered. */
+    public static final String ROW_INVARIANT_RESULTS = "rowInvariantConditionResults";
+    private static final Set<String> renderInvariantNames = UtilMisc.toSet("parameters", "userLogin", "security", "locale", "timeZone",
+            "request", "response", "session", "delegator", "dispatcher", "nowTimestamp", "externalLoginKey", "uiLabelMap");
+    private static final Set<String> keywords = UtilMisc.toSet("true", "false", "null", "in", "instanceof", "as");
+    // bounded: the expanded text of a condition with ${} expansions can differ for each row, and each class keeps its class loader
+    private static final UtilCache<String, Class<? extends Script>> scriptClassCache = UtilCache.createUtilCache("widget.useWhen.scriptClass", 1000, 0, false);
+
+    private UseWhenEvaluator() {
+    }
+
+    /** Evaluates <code>expression</code>, with the operator substitutions of <code>StringUtil</code>, in <code>context</code>. */
+    public static Object eval(String expression, Map<String, Object> context) throws CompilationFailedException {
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("Evaluating -- " + expression, module);
+        }
+        Script script = InvokerHelper.createScript(getScriptClass(expression), new ContextBinding(context));
+        return script.run();
+    }
+
+    private static Class<? extends Script> getScriptClass(String expression) throws CompilationFailedException {
+        Class<? extends Script> scriptClass = scriptClassCache.get(expression);
+        if (scriptClass == null) {
+            GroovyClassLoader groovyClassLoader = new GroovyClassLoader();
+            try {
+                scriptClass = UtilGenerics.cast(groovyClassLoader.parseClass(StringUtil.convertOperatorSubstitutions(expression)));
+            } finally {
+                try {
+                    groovyClassLoader.close();
+                } catch (IOException e) {
+                    Debug.logWarning(e, module);
+                }
+            }
+            scriptClass = scriptClassCache.putIfAbsentAndGet(expression, scriptClass);
+        }
+        return scriptClass;
+    }
+
+    /**
+     * Evaluates the boolean <code>expression</code> of the <code>condition</code> of a form, reusing its result for
+     * the rows of the list form being rendered if <code>rowInvariant</code>. The <code>kind</code> of condition and
+     * the <code>modelFormField</code> it belongs to, if any, are only used in the error message.
+     */
+    public static boolean evalCondition(Object condition, String expression, boolean rowInvariant, Map<String, Object> context,
+            String kind, ModelFormField modelFormField) throws CompilationFailedException {
+        Map<Object, Boolean> rowInvariantResults = rowInvariant ? UtilGenerics.<Map<Object, Boolean>>cast(context.get(ROW_INVARIANT_RESULTS)) : null;
+        Boolean result = rowInvariantResults != null ? rowInvariantResults.get(condition) : null;
+        if (result == null) {
+            Object retVal = eval(expression, context);
+            // retVal should be a Boolean, if not something weird is up...
+            if (!(retVal instanceof Boolean)) {
+                String message = "Return value from " + kind + " eval was not a Boolean: " + (retVal != null ? retVal.getClass().getName() : "null")
+                        + " [" + retVal + "]";
+                if (modelFormField != null) {
+                    message += " on the field " + modelFormField.getName() + " of form " + modelFormField.getModelForm().getName();
+                }
+                throw new IllegalArgumentException(message);
+            }
+            result = (Boolean) retVal;
+            if (rowInvariantResults != null) {
+                rowInvariantResults.put(condition, result);
+            }
+        }
+        return result.booleanValue();
+    }
+
+    /** Returns <code>true</code> if the context variable <code>name</code> is fixed for a render, like <code>parameters</code>. */
+    public static boolean isRenderInvariantName(String name) {
+        return renderInvariantNames.contains(name);
+    }
+
+    /**
+     * Returns <code>true</code> if the condition <code>expression</code>, including its <code>${}</code> expansions,
+     * only reads variables fixed for a render, so its result is the same for all the rows of a list form.
+     */
+    public static boolean isRowInvariant(String expression) {
+        if (expression == null || expression.trim().isEmpty()) {
+            return false;
+        }
+        int length = expression.length();
+        char quote = 0;
+        // the depth of the ${} expansions of the string being read
+        int expansionDepth = 0;
+        char previous = 0;
+        int i = 0;
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (quote != 0 && expansionDepth == 0) {
+                // in a string: only its expansions are read
+                if (c == '\\') {
+                    i += 2;
+                    continue;
+                }
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '$' && i + 1 < length && expression.charAt(i + 1) == '{') {
+                    expansionDepth++;
+                    i++;
+                }
+                i++;
+                continue;
+            }
+            if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '}' && expansionDepth > 0) {
+                expansionDepth--;
+            } else if (c == '$' && i + 1 < length && expression.charAt(i + 1) == '{') {
+                i += 2;
+                previous = '{';
+                continue;
+            } else if (c == '%') {
+                // operator substitution, like %greater-equals
+                i++;
+                while (i < length && (Character.isLetter(expression.charAt(i)) || expression.charAt(i) == '-')) {
+                    i++;
+                }
+                previous = ' ';
+                continue;
+            } else if (Character.isDigit(c)) {
+                while (i < length && (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+                    i++;
+                }
+                previous = '0';
+                continue;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(expression.charAt(i))) {
+                    i++;
+                }
+                String name = expression.substring(start, i);
+                // the properties and methods of a value are read from the value
+                if (previous != '.' && !keywords.contains(name) && !renderInvariantNames.contains(name)) {
+                    return false;
+                }
+                previous = 'a';
+                continue;
+            }
+            if (!Character.isWhitespace(c)) {
+                previous = c;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    /** Reads the variables from the context, writes them to a map local to the evaluation. */
+    private static final class ContextBinding extends Binding {
+        private final Map<String, Object> context;
+
+        private ContextBinding(Map<String, Object> context) {
+            super(new HashMap<String, Object>());
+            this.context = context;
+        }
+
+        @Override
+        public Object getVariable(String name) {
+            Map<?, ?> variables = getVariables();
+            if (variables.containsKey(name)) {
+                return variables.get(name);
+            }
+            if ("context".equals(name)) {
+                return context;
+            }
+            return context != null ? context.get(name) : null;
+        }
+    }
+}
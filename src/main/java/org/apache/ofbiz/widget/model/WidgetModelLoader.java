@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.ofbiz.base.metrics.Metrics;
+import org.apache.ofbiz.base.metrics.MetricsFactory;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.xml.sax.SAXException;
+
+/**
+ * Widget Library - Loads widget models into a <code>UtilCache</code>, one resource at a time.
+ * <p>
+ * A resource is loaded by the first thread asking for it, the other threads asking for the same
+ * resource wait for that load to complete, while threads asking for other resources are not blocked.
+ * The time spent loading resources and waiting for a load done by another thread is recorded in the
+ * <code>&lt;name&gt;.load</code> and <code>&lt;name&gt;.wait</code> metrics.
+ * </p>
+ * <p>
+ * A thread can't wait for a load it is doing itself: the models reading other resources while they
+ * are built (like forms extending a form of another file) check {@link #isLoading(String)} first.
+ * Nor can it wait for a load done by a thread waiting, directly or through other threads, for one of
+ * its own loads, as with two threads loading two files extending each other: the loads being waited
+ * for by each thread are tracked across all the loaders, and a thread which would close such a cycle
+ * loads the resource itself without caching it instead of waiting.
+ * </p>
+ */
+public final class WidgetModelLoader<V> {
+
+    public static final String module = WidgetModelLoader.class.getName();
+
+    private static final ConcurrentMap<FutureTask<?>, Thread> loadingThreads = new ConcurrentHashMap<FutureTask<?>, Thread>();
+    private static final ConcurrentMap<Thread, FutureTask<?>> waitedLoads = new ConcurrentHashMap<Thread, FutureTask<?>>();
+
+    private final UtilCache<String, V> cache;
+    private final ConcurrentMap<String, FutureTask<V>> loadTasks = new ConcurrentHashMap<String, FutureTask<V>>();
+    private final Metrics loadMetrics;
+    private final Metrics waitMetrics;
+    private final ThreadLocal<Set<String>> currentLoads = new ThreadLocal<Set<String>>() {
+        @Override
+        protected Set<String> initialValue() {
+            return new HashSet<String>();
+        }
+    };
+
+    public WidgetModelLoader(String name, UtilCache<String, V> cache) {
+        this.cache = cache;
+        this.loadMetrics = MetricsFactory.getInstance(name + ".load", 100, 60000, 0.7);
+        this.waitMetrics = MetricsFactory.getInstance(name + ".wait", 100, 60000, 0.7);
+    }
+
+    /**
+     * Returns the cached value for <code>key</code>, calling <code>loader</code> to load and cache it
+     * if needed. A <code>null</code> value returned by the loader is not cached.
+     */
+    public V get(final String key, final Callable<V> loader) throws IOException, SAXException, ParserConfigurationException {
+        V value = cache.get(key);
+        if (value != null) {
+            return value;
+        }
+        FutureTask<V> loadTask = new FutureTask<V>(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                V value = loader.call();
+                if (value != null) {
+                    value = cache.putIfAbsentAndGet(key, value);
+                }
+                return value;
+            }
+        });
+        if (isLoading(key)) {
+            throw new IllegalStateException("Recursive load of widget resource [" + key + "]");
+        }
+        FutureTask<V> runningTask = loadTasks.putIfAbsent(key, loadTask);
+        long startTime = System.currentTimeMillis();
+        Thread currentThread = Thread.currentThread();
+        if (runningTask == null) {
+            Set<String> keys = currentLoads.get();
+            keys.add(key);
+            loadingThreads.put(loadTask, currentThread);
+            try {
+                loadTask.run();
+                loadMetrics.recordServiceRate(1, System.currentTimeMillis() - startTime);
+                return getResult(loadTask);
+            } finally {
+                keys.remove(key);
+                loadingThreads.remove(loadTask);
+                loadTasks.remove(key, loadTask);
+            }
+        }
+        // registered before looking for a cycle: of two threads about to wait for each other, at least one sees it
+        waitedLoads.put(currentThread, runningTask);
+        if (isWaitingForItself(currentThread)) {
+            waitedLoads.remove(currentThread);
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Loading widget resource [" + key + "] without caching it, its load waits for a load of this thread", module);
+            }
+            return loadUncached(key, loader);
+        }
+        try {
+            return getResult(runningTask);
+        } finally {
+            waitedLoads.remove(currentThread);
+            waitMetrics.recordServiceRate(1, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the load waited for by <code>thread</code> is done by <code>thread</code>
+     * or by a thread waiting, through any number of other threads, for a load done by <code>thread</code>.
+     */
+    private static boolean isWaitingForItself(Thread thread) {
+        Set<Thread> visitedThreads = new HashSet<Thread>();
+        FutureTask<?> waitedLoad = waitedLoads.get(thread);
+        while (waitedLoad != null) {
+            Thread loadingThread = loadingThreads.get(waitedLoad);
+            if (loadingThread == null) {
+                return false;
+            }
+            if (loadingThread == thread) {
+                return true;
+            }
+            if (!visitedThreads.add(loadingThread)) {
+                return false;
+            }
+            waitedLoad = waitedLoads.get(loadingThread);
+        }
+        return false;
+    }
+
+    private V loadUncached(String key, Callable<V> loader) throws IOException, SAXException, ParserConfigurationException {
+        Set<String> keys = currentLoads.get();
+        keys.add(key);
+        try {
+            return loader.call();
+        } catch (Exception e) {
+            throw toLoadException(e);
+        } finally {
+            keys.remove(key);
+        }
+    }
+
+    private static <V> V getResult(FutureTask<V> loadTask) throws IOException, SAXException, ParserConfigurationException {
+        try {
+            return loadTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptedException = new InterruptedIOException("Interrupted while waiting for a widget model load");
+            interruptedException.initCause(e);
+            throw interruptedException;
+        } catch (ExecutionException e) {
+            throw toLoadException(e.getCause());
+        }
+    }
+
+    /** Throws <code>cause</code> if it is one of the exceptions thrown by the loads, returns it as an <code>IOException</code> otherwise. */
+    private static IOException toLoadException(Throwable cause) throws SAXException, ParserConfigurationException {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        } else if (cause instanceof SAXException) {
+            throw (SAXException) cause;
+        } else if (cause instanceof ParserConfigurationException) {
+            throw (ParserConfigurationException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    /** Returns <code>true</code> if the current thread is loading the resource cached under <code>key</code>. */
+    public boolean isLoading(String key) {
+        return currentLoads.get().contains(key);
+    }
+
+    /** Returns the metrics of the time spent loading resources. */
+    public Metrics getLoadMetrics() {
+        return loadMetrics;
+    }
+
+    /** Returns the metrics of the time threads spent waiting for a load done by another thread. */
+    public Metrics getWaitMetrics() {
+        return waitMetrics;
+    }
+}
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.StringUtil;
+import org.apache.ofbiz.base.util.UtilProperties;
+
+/**
+ * Widget Library - On-disk snapshot of the models read from a widget file.
+ * <p>
+ * The models read from a widget file are serialized to the snapshot directory, and deserialized
+ * instead of parsing the file again on the next start. A snapshot is used only if its widget file
+ * is unchanged: same last modified time and length, or same content hash, and if it was written by the
+ * same code: same snapshot format, Java version and widget classes (the jar or class files they are loaded
+ * from). A snapshot written by another build is ignored and the file is parsed again.
+ * </p>
+ * <p>
+ * Only used for the widget files on the file system, and when <code>widget.snapshot.enable=true</code>
+ * in widget.properties.
+ * </p>
+ */
+public final class WidgetModelSnapshot {
+
+    public static final String module = WidgetModelSnapshot.class.getName();
+
+    private static final boolean enabled = "true".equals(UtilProperties.getPropertyValue("widget", "widget.snapshot.enable", "false"));
+    private static final File snapshotDirectory = new File(System.getProperty("ofbiz.home", "."),
+            UtilProperties.getPropertyValue("widget", "widget.snapshot.directory", "runtime/widget-snapshot"));
+    /** The version of the snapshot file layout, to be changed with it. */
+    private static final String FORMAT_VERSION = "2";
+
+    private WidgetModelSnapshot() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Identifies the code writing the snapshots, <code>null</code> if it can't be identified: snapshots are then not used. */
+    private static final class CodeStamp {
+        private static final String value = createCodeStamp();
+    }
+
+    private static String createCodeStamp() {
+        StringBuilder stamp = new StringBuilder(FORMAT_VERSION);
+        stamp.append(':').append(System.getProperty("java.specification.version"));
+        try {
+            CodeSource codeSource = WidgetModelSnapshot.class.getProtectionDomain().getCodeSource();
+            URL codeUrl = codeSource != null ? codeSource.getLocation() : null;
+            if (codeUrl == null || !"file".equals(codeUrl.getProtocol())) {
+                Debug.logWarning("Could not identify the widget classes loaded from [" + codeUrl + "], the widget snapshots are not used", module);
+                return null;
+            }
+            File codeFile = new File(codeUrl.toURI());
+            if (codeFile.isDirectory()) {
+                MessageDigest messageDigest = getMessageDigest();
+                digestClassFiles(codeFile, "", messageDigest);
+                stamp.append(':').append(StringUtil.toHexString(messageDigest.digest()));
+            } else {
+                stamp.append(':').append(codeFile.getPath()).append(':').append(codeFile.lastModified()).append(':').append(codeFile.length());
+            }
+        } catch (URISyntaxException e) {
+            Debug.logWarning(e, "Could not identify the widget classes, the widget snapshots are not used", module);
+            return null;
+        } catch (SecurityException e) {
+            Debug.logWarning(e, "Could not identify the widget classes, the widget snapshots are not used", module);
+            return null;
+        }
+        return stamp.toString();
+    }
+
+    private static void digestClassFiles(File directory, String path, MessageDigest messageDigest) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                digestClassFiles(file, path + file.getName() + "/", messageDigest);
+            } else if (file.getName().endsWith(".class")) {
+                String fileStamp = path + file.getName() + ":" + file.lastModified() + ":" + file.length() + ";";
+                messageDigest.update(fileStamp.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Returns the models saved for the widget file at <code>location</code>, or <code>null</code> if there is no
+     * usable snapshot for the current content of the file.
+     */
+    public static Object read(String location, URL fileUrl) {
+        File sourceFile = getSourceFile(fileUrl);
+        if (sourceFile == null || CodeStamp.value == null) {
+            return null;
+        }
+        File snapshotFile = getSnapshotFile(location);
+        if (!snapshotFile.isFile()) {
+            return null;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)));
+            if (!location.equals(in.readUTF()) || !CodeStamp.value.equals(in.readUTF())) {
+                return null;
+            }
+            long lastModified = in.readLong();
+            long length = in.readLong();
+            String contentHash = in.readUTF();
+            if ((lastModified != sourceFile.lastModified() || length != sourceFile.length()) && !contentHash.equals(getContentHash(sourceFile))) {
+                return null;
+            }
+            return in.readObject();
+        } catch (IOException e) {
+            Debug.logWarning("Could not read the widget snapshot of [" + location + "], the file will be parsed: " + e.toString(), module);
+        } catch (ClassNotFoundException e) {
+            Debug.logWarning("Could not read the widget snapshot of [" + location + "], the file will be parsed: " + e.toString(), module);
+        } finally {
+            close(in);
+        }
+        return null;
+    }
+
+    /** Saves the <code>models</code> read from the widget file at <code>location</code>. */
+    public static void write(String location, URL fileUrl, Object models) {
+        File sourceFile = getSourceFile(fileUrl);
+        if (sourceFile == null || CodeStamp.value == null) {
+            return;
+        }
+        if (!snapshotDirectory.isDirectory() && !snapshotDirectory.mkdirs()) {
+            Debug.logWarning("Could not create the widget snapshot directory [" + snapshotDirectory + "]", module);
+            return;
+        }
+        File snapshotFile = getSnapshotFile(location);
+        File tempFile = new File(snapshotFile.getPath() + ".tmp" + Thread.currentThread().getId());
+        ObjectOutputStream out = null;
+        try {
+            // read the file state first: a change made while writing makes the snapshot stale, not wrong
+            long lastModified = sourceFile.lastModified();
+            long length = sourceFile.length();
+            String contentHash = getContentHash(sourceFile);
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeUTF(location);
+            out.writeUTF(CodeStamp.value);
+            out.writeLong(lastModified);
+            out.writeLong(length);
+            out.writeUTF(contentHash);
+            out.writeObject(models);
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(snapshotFile)) {
+                snapshotFile.delete();
+                if (!tempFile.renameTo(snapshotFile)) {
+                    Debug.logWarning("Could not write the widget snapshot of [" + location + "] to [" + snapshotFile + "]", module);
+                }
+            }
+        } catch (IOException e) {
+            Debug.logWarning("Could not write the widget snapshot of [" + location + "]: " + e.toString(), module);
+        } finally {
+            close(out);
+            tempFile.delete();
+        }
+    }
+
+    private static File getSourceFile(URL fileUrl) {
+        if (fileUrl == null || !"file".equals(fileUrl.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(fileUrl.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static File getSnapshotFile(String location) {
+        try {
+            return new File(snapshotDirectory, digest(location.getBytes("UTF-8")) + ".ser");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getContentHash(File sourceFile) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(sourceFile));
+        try {
+            MessageDigest messageDigest = getMessageDigest();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, count);
+            }
+            return StringUtil.toHexString(messageDigest.digest());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String digest(byte[] bytes) {
+        return StringUtil.toHexString(getMessageDigest().digest(bytes));
+    }
+
+    private static MessageDigest getMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Debug.logWarning(e, module);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.model;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.GeneralException;
+import org.apache.ofbiz.base.util.StringUtil;
+import org.apache.ofbiz.base.util.collections.FlexibleMapAccessor;
+import org.apache.ofbiz.widget.cache.GenericWidgetOutput;
+import org.apache.ofbiz.widget.cache.ScreenCache;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
+import org.apache.ofbiz.widget.cache.WidgetCachePolicy;
+import org.apache.ofbiz.widget.cache.WidgetContextCacheKey;
+import org.apache.ofbiz.widget.renderer.ScreenStringRenderer;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Widget Library - Output cache of a screen fragment (container, screenlet, include-screen or
+ * decorator-section-include) declared with the <code>use-cache</code> attribute.
+ * <p>
+ * The fragment output is stored in the {@link ScreenCache} under its own name, and replayed
+ * instead of rendering the fragment when the same cache key is met again. The name is made of the
+ * screen, the tag and the name or id of the fragment, or its position in the screen when it has none.
+ * The output of a decorator-section-include is stored under its name followed by the screens
+ * supplying the section, the output of an include-screen under its name followed by the screen
+ * it resolves to.
+ * </p>
+ */
+public final class WidgetOutputCache implements Serializable {
+
+    public static final String module = WidgetOutputCache.class.getName();
+
+    private final String cacheName;
+    private final String cacheKey;
+    private final List<FlexibleMapAccessor<Object>> cacheKeyFields;
+    private final WidgetCachePolicy cachePolicy;
+
+    private WidgetOutputCache(String cacheName, String cacheKey, WidgetCachePolicy cachePolicy) {
+        this.cacheName = cacheName;
+        this.cacheKey = cacheKey;
+        this.cacheKeyFields = parseCacheKey(cacheKey);
+        this.cachePolicy = cachePolicy;
+    }
+
+    /**
+     * Returns the output cache declared on <code>widgetElement</code>, or <code>null</code> if
+     * its <code>use-cache</code> attribute is not <code>true</code>.
+     */
+    public static WidgetOutputCache fromElement(ModelScreenWidget widget, Element widgetElement) {
+        if (!"true".equals(widgetElement.getAttribute("use-cache"))) {
+            return null;
+        }
+        ModelScreen modelScreen = widget.getModelScreen();
+        StringBuilder cacheName = new StringBuilder();
+        cacheName.append(modelScreen.getSourceLocation()).append(":").append(modelScreen.getName());
+        cacheName.append("#").append(widgetElement.getTagName());
+        String fragmentName = getFragmentName(widgetElement);
+        Element screenElement = getScreenElement(widgetElement);
+        if (fragmentName.isEmpty()) {
+            // the position of the element is unique within the screen, unlike its line when not known
+            fragmentName = getElementPath(widgetElement, screenElement);
+        } else if (!isUniqueFragmentName(widgetElement, fragmentName, screenElement)) {
+            String elementPath = getElementPath(widgetElement, screenElement);
+            Debug.logWarning("The " + widgetElement.getTagName() + " [" + fragmentName + "] using use-cache=\"true\" is not unique in screen ["
+                    + modelScreen.getName() + "] of [" + modelScreen.getSourceLocation() + "], its output is cached under [" + elementPath + "]", module);
+            fragmentName = fragmentName + "@" + elementPath;
+        }
+        cacheName.append(":").append(fragmentName);
+        return new WidgetOutputCache(cacheName.toString(), widgetElement.getAttribute("cache-key"), WidgetCachePolicy.fromElement(widgetElement));
+    }
+
+    /**
+     * Returns the name identifying the fragment of <code>widgetElement</code> in its screen: its name or id, along
+     * with the location for an include-screen. Empty if the element has neither name nor id.
+     */
+    private static String getFragmentName(Element widgetElement) {
+        String fragmentName = widgetElement.getAttribute("name");
+        if (fragmentName.isEmpty()) {
+            fragmentName = widgetElement.getAttribute("id");
+        }
+        if (!fragmentName.isEmpty() && ModelScreenWidget.IncludeScreen.TAG_NAME.equals(widgetElement.getTagName())) {
+            fragmentName = widgetElement.getAttribute("location") + "#" + fragmentName;
+        }
+        return fragmentName;
+    }
+
+    private static Element getScreenElement(Element widgetElement) {
+        Node node = widgetElement;
+        while (node.getParentNode() instanceof Element) {
+            node = node.getParentNode();
+            if ("screen".equals(((Element) node).getTagName())) {
+                break;
+            }
+        }
+        return (Element) node;
+    }
+
+    /** Returns the path of <code>widgetElement</code> in <code>screenElement</code>, as tag names with their index among the same tags. */
+    private static String getElementPath(Element widgetElement, Element screenElement) {
+        LinkedList<String> steps = new LinkedList<String>();
+        for (Element element = widgetElement; element != screenElement; element = (Element) element.getParentNode()) {
+            int index = 1;
+            for (Node sibling = element.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+                if (sibling instanceof Element && element.getTagName().equals(((Element) sibling).getTagName())) {
+                    index++;
+                }
+            }
+            steps.addFirst(element.getTagName() + "[" + index + "]");
+        }
+        return StringUtil.join(steps, "/");
+    }
+
+    private static boolean isUniqueFragmentName(Element widgetElement, String fragmentName, Element screenElement) {
+        NodeList elements = screenElement.getElementsByTagName(widgetElement.getTagName());
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            if (element != widgetElement && "true".equals(element.getAttribute("use-cache")) && fragmentName.equals(getFragmentName(element))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Parses a comma separated <code>cache-key</code> attribute value. */
+    public static List<FlexibleMapAccessor<Object>> parseCacheKey(String cacheKey) {
+        if (cacheKey.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<FlexibleMapAccessor<Object>> cacheKeyFields = new ArrayList<FlexibleMapAccessor<Object>>();
+        for (String fieldName : StringUtil.split(cacheKey, ",")) {
+            fieldName = fieldName.trim();
+            if (!fieldName.isEmpty()) {
+                cacheKeyFields.add(FlexibleMapAccessor.<Object>getInstance(fieldName));
+            }
+        }
+        return Collections.unmodifiableList(cacheKeyFields);
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public List<FlexibleMapAccessor<Object>> getCacheKeyFields() {
+        return cacheKeyFields;
+    }
+
+    public WidgetCachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /** Writes the cached output of <code>widget</code>, rendering and caching it first if needed. */
+    public void renderWidgetString(ModelScreenWidget widget, Appendable writer, Map<String, Object> context, ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+        renderWidgetString(widget, null, writer, context, screenStringRenderer);
+    }
+
+    /**
+     * Writes the cached output of <code>widget</code> for the content supplied by <code>providerName</code> (the screens
+     * supplying a decorator section, or the screen an include-screen resolves to), rendering and caching it first if needed.
+     */
+    public void renderWidgetString(ModelScreenWidget widget, String providerName, Appendable writer, Map<String, Object> context,
+            ScreenStringRenderer screenStringRenderer) throws GeneralException, IOException {
+        String cacheName = providerName != null ? this.cacheName + "@" + providerName : this.cacheName;
+        WidgetContextCacheKey wcck;
+        if (cacheKeyFields.isEmpty()) {
+            wcck = new WidgetContextCacheKey(context);
+        } else {
+            wcck = new WidgetContextCacheKey(cacheKeyFields, context);
+        }
+        ScreenCache screenCache = new ScreenCache();
+        GenericWidgetOutput gwo = screenCache.get(cacheName, wcck);
+        if (gwo == null) {
+            WidgetCacheInvalidator.register(widget.getModelScreen().getDelegator(context));
+            StringWriter sw = new StringWriter();
+            Set<String> entityNames;
+            long changeStamp = WidgetCacheInvalidator.getChangeStamp();
+            WidgetCacheInvalidator.startRecording();
+            try {
+                WidgetCacheInvalidator.recordWidget(widget);
+                widget.renderUncachedWidgetString(sw, context, screenStringRenderer);
+            } finally {
+                entityNames = WidgetCacheInvalidator.stopRecording();
+            }
+            gwo = new GenericWidgetOutput(sw.toString());
+            WidgetCacheInvalidator.addDependencies(cacheName, entityNames);
+            screenCache.put(cacheName, wcck, gwo, cachePolicy);
+            if (WidgetCacheInvalidator.isChangedSince(entityNames, changeStamp)) {
+                // read before a change removing the outputs of the widget
+                screenCache.remove(cacheName, wcck);
+            }
+        } else {
+            WidgetCacheInvalidator.recordCachedWidget(cacheName);
+        }
+        writer.append(gwo.toString());
+    }
+}
@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilURL;
+import org.apache.ofbiz.base.util.UtilXml;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Widget Library - Reads the widget definitions of an XML file one at a time.
+ * <p>
+ * The file is read with a StAX stream reader. Each widget definition element is built as a small DOM
+ * tree - with the <code>systemId</code>, <code>startLine</code> and <code>startColumn</code> user data
+ * expected by {@link ModelWidget} - handed to an {@link ElementHandler}, then discarded. Only one
+ * definition is in memory at a time, instead of the DOM of the whole file.
+ * </p>
+ * <p>
+ * When a schema is given, each definition is validated against it before being handed to the handler,
+ * which gives its attributes their schema default values like the validating DOM parser does. The
+ * validation errors are logged, not thrown.
+ * </p>
+ * <p>
+ * The handler must not look outside of the element it receives: the other definitions of the file
+ * are not part of its owner document, see {@link #isStreamed(Document)}.
+ * </p>
+ * <p>
+ * Streaming lowers the peak memory of reading a large file, not its load time: each definition is
+ * validated on its own, which costs about as much as validating the whole file while parsing it.
+ * </p>
+ */
+public final class WidgetXmlStreamReader {
+
+    public static final String module = WidgetXmlStreamReader.class.getName();
+    private static final XMLInputFactory inputFactory = createInputFactory();
+    private static final String SCHEMA_LOCATION_PREFIX = "http://ofbiz.apache.org/dtds/";
+    private static final String STREAMED_USER_DATA = "ofbiz.streamed";
+    private static final ConcurrentMap<String, Schema> schemas = new ConcurrentHashMap<String, Schema>();
+
+    /** Receives the widget definition elements read from a file. */
+    public interface ElementHandler {
+        void handleElement(Element element);
+    }
+
+    private WidgetXmlStreamReader() {
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return inputFactory;
+    }
+
+    /**
+     * Returns the schema named <code>schemaFileName</code> (like <code>widget-screen.xsd</code>), read from the
+     * classpath, as are the schemas it includes from <code>http://ofbiz.apache.org/dtds/</code>.
+     */
+    public static Schema getSchema(String schemaFileName) throws SAXException {
+        Schema schema = schemas.get(schemaFileName);
+        if (schema == null) {
+            URL schemaUrl = UtilURL.fromResource(schemaFileName);
+            if (schemaUrl == null) {
+                throw new SAXException("Could not find the widget schema [" + schemaFileName + "] on the classpath");
+            }
+            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            schemaFactory.setResourceResolver(new LocalResourceResolver());
+            schema = schemaFactory.newSchema(schemaUrl);
+            Schema existing = schemas.putIfAbsent(schemaFileName, schema);
+            if (existing != null) {
+                schema = existing;
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Returns <code>true</code> if <code>document</code> is the owner document of the elements read by a
+     * <code>WidgetXmlStreamReader</code>, which only holds the element being handled.
+     */
+    public static boolean isStreamed(Document document) {
+        return Boolean.TRUE.equals(document.getUserData(STREAMED_USER_DATA));
+    }
+
+    /**
+     * Reads the file at <code>url</code> and passes each <code>tagName</code> element having a
+     * <code>parentTagName</code> parent to <code>handler</code>, in document order.
+     */
+    public static void readElements(URL url, String parentTagName, String tagName, ElementHandler handler) throws IOException, SAXException {
+        readElements(url, parentTagName, tagName, null, handler);
+    }
+
+    /**
+     * Reads the file at <code>url</code> and passes each <code>tagName</code> element having a
+     * <code>parentTagName</code> parent to <code>handler</code>, in document order, after validating it
+     * against <code>schema</code> if not <code>null</code>.
+     */
+    public static void readElements(URL url, String parentTagName, String tagName, Schema schema, ElementHandler handler) throws IOException, SAXException {
+        if (url == null) {
+            throw new IllegalArgumentException("The URL of the widget file is null");
+        }
+        final String systemId = url.toString();
+        Validator validator = null;
+        if (schema != null) {
+            validator = schema.newValidator();
+            validator.setErrorHandler(new ErrorHandler() {
+                @Override
+                public void warning(SAXParseException e) {
+                    Debug.logWarning("Widget file [" + systemId + "]: " + e.getMessage(), module);
+                }
+
+                @Override
+                public void error(SAXParseException e) {
+                    Debug.logError("Widget file [" + systemId + "] is not valid: " + e.getMessage(), module);
+                }
+
+                @Override
+                public void fatalError(SAXParseException e) throws SAXException {
+                    throw e;
+                }
+            });
+        }
+        InputStream inputStream = url.openStream();
+        XMLStreamReader reader = null;
+        try {
+            reader = inputFactory.createXMLStreamReader(systemId, inputStream);
+            Document document = UtilXml.makeEmptyXmlDocument();
+            document.setUserData(STREAMED_USER_DATA, Boolean.TRUE, null);
+            // the names of the open elements outside of a widget definition, innermost first
+            LinkedList<String> openElementNames = new LinkedList<String>();
+            Element definitionElement = null;
+            Element currentElement = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    String elementName = getQualifiedName(reader.getPrefix(), reader.getLocalName());
+                    if (currentElement != null) {
+                        Element element = createElement(document, reader, elementName, systemId);
+                        currentElement.appendChild(element);
+                        currentElement = element;
+                    } else if (tagName.equals(elementName) && parentTagName.equals(openElementNames.peek())) {
+                        definitionElement = createElement(document, reader, elementName, systemId);
+                        document.appendChild(definitionElement);
+                        currentElement = definitionElement;
+                    } else {
+                        openElementNames.push(elementName);
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (currentElement == null) {
+                        openElementNames.pop();
+                    } else if (currentElement == definitionElement) {
+                        if (validator != null) {
+                            // the result is the validated element itself: the default attributes are added to it
+                            validator.validate(new DOMSource(definitionElement, systemId), new DOMResult(definitionElement));
+                        }
+                        handler.handleElement(definitionElement);
+                        document.removeChild(definitionElement);
+                        definitionElement = null;
+                        currentElement = null;
+                    } else {
+                        currentElement = (Element) currentElement.getParentNode();
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    if (currentElement != null) {
+                        currentElement.appendChild(document.createTextNode(reader.getText()));
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new SAXException("Error reading widget file [" + systemId + "]: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // the input stream is closed below
+                }
+            }
+            inputStream.close();
+        }
+    }
+
+    private static Element createElement(Document document, XMLStreamReader reader, String elementName, String systemId) {
+        // namespace aware nodes: the schema validation needs their local names
+        Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()), elementName);
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)), getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                    reader.getAttributeValue(i));
+        }
+        Location location = reader.getLocation();
+        element.setUserData("systemId", systemId, null);
+        element.setUserData("startLine", Integer.valueOf(location.getLineNumber()), null);
+        element.setUserData("startColumn", Integer.valueOf(location.getColumnNumber()), null);
+        return element;
+    }
+
+    private static String emptyToNull(String namespaceUri) {
+        return namespaceUri == null || namespaceUri.isEmpty() ? null : namespaceUri;
+    }
+
+    private static String getQualifiedName(String prefix, String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+
+    /** Reads the schemas included from <code>http://ofbiz.apache.org/dtds/</code> from the classpath. */
+    private static final class LocalResourceResolver implements LSResourceResolver {
+        @Override
+        public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId, String baseURI) {
+            if (systemId == null || !systemId.startsWith(SCHEMA_LOCATION_PREFIX)) {
+                return null;
+            }
+            URL schemaUrl = UtilURL.fromResource(systemId.substring(SCHEMA_LOCATION_PREFIX.length()));
+            if (schemaUrl == null) {
+                return null;
+            }
+            try {
+                DOMImplementationLS domImplementation = (DOMImplementationLS) UtilXml.makeEmptyXmlDocument().getImplementation();
+                LSInput input = domImplementation.createLSInput();
+                input.setSystemId(schemaUrl.toExternalForm());
+                input.setPublicId(publicId);
+                input.setByteStream(schemaUrl.openStream());
+                return input;
+            } catch (IOException e) {
+                Debug.logWarning(e, "Could not read the widget schema [" + schemaUrl + "]", module);
+                return null;
+            }
+        }
+    }
+}
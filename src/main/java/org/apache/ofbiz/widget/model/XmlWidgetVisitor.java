@@ -21,6 +21,7 @@ package org.apache.ofbiz.widget.model;
 import java.util.Collection;
 import java.util.Map;
 
+import org.apache.ofbiz.widget.cache.WidgetCachePolicy;
 import org.apache.ofbiz.widget.model.HtmlWidget.HtmlTemplate;
 import org.apache.ofbiz.widget.model.HtmlWidget.HtmlTemplateDecorator;
 import org.apache.ofbiz.widget.model.HtmlWidget.HtmlTemplateDecoratorSection;
@@ -96,6 +97,7 @@ public class XmlWidgetVisitor extends XmlAbstractWidgetVisitor implements ModelW
         visitAttribute("auto-update-target", container.getAutoUpdateTargetExdr());
         visitAttribute("id", container.getIdExdr());
         visitAttribute("style", container.getStyleExdr());
+        visitOutputCache(container.getOutputCache());
         writer.append(">");
         visitSubWidgets(container.getSubWidgets());
         writer.append("</container>");
@@ -140,6 +142,7 @@ public class XmlWidgetVisitor extends XmlAbstractWidgetVisitor implements ModelW
     public void visit(DecoratorSectionInclude decoratorSectionInclude) throws Exception {
         writer.append("<decorator-section-include");
         visitModelWidget(decoratorSectionInclude);
+        visitOutputCache(decoratorSectionInclude.getOutputCache());
         writer.append("/>");
     }
 
@@ -199,6 +202,7 @@ public class XmlWidgetVisitor extends XmlAbstractWidgetVisitor implements ModelW
         visitModelWidget(includeScreen);
         visitAttribute("location", includeScreen.getLocationExdr());
         visitAttribute("share-scope", includeScreen.getShareScopeExdr());
+        visitOutputCache(includeScreen.getOutputCache());
         writer.append("/>");
     }
 
@@ -412,6 +416,8 @@ public class XmlWidgetVisitor extends XmlAbstractWidgetVisitor implements ModelW
         visitAttribute("transaction-timeout", modelScreen.getTransactionTimeout());
         visitAttribute("use-transaction", modelScreen.getUseTransaction());
         visitAttribute("use-cache", modelScreen.getUseCache());
+        visitAttribute("cache-key", modelScreen.getCacheKey());
+        visitCachePolicy(modelScreen.getCachePolicy());
         writer.append(">");
         modelScreen.getSection().accept(this);
         writer.append("</screen>");
@@ -486,6 +492,7 @@ public class XmlWidgetVisitor extends XmlAbstractWidgetVisitor implements ModelW
         visitAttribute("save-collapsed", screenlet.getSaveCollapsed());
         visitAttribute("padded", screenlet.getPadded());
         visitAttribute("title", screenlet.getTitleExdr());
+        visitOutputCache(screenlet.getOutputCache());
         writer.append(">");
         visitSubWidgets(screenlet.getSubWidgets());
         writer.append("</screenlet>");
@@ -539,6 +546,18 @@ public class XmlWidgetVisitor extends XmlAbstractWidgetVisitor implements ModelW
         }
     }
 
+    private void visitCachePolicy(WidgetCachePolicy cachePolicy) throws Exception {
+        if (cachePolicy.getMaxEntries() > 0) {
+            visitAttribute("cache-max-entries", cachePolicy.getMaxEntries());
+        }
+        if (cachePolicy.getExpireTime() > 0) {
+            visitAttribute("cache-expire-time", String.valueOf(cachePolicy.getExpireTime()));
+        }
+        if (cachePolicy.getMaxBytes() > 0) {
+            visitAttribute("cache-max-bytes", String.valueOf(cachePolicy.getMaxBytes()));
+        }
+    }
+
     public void visitModelForm(ModelForm modelForm) throws Exception {
         visitModelWidget(modelForm);
         if (modelForm.getParentModelForm() != null) {
@@ -644,6 +663,14 @@ public class XmlWidgetVisitor extends XmlAbstractWidgetVisitor implements ModelW
         visitUpdateAreas(modelForm.getOnSubmitUpdateAreas());
     }
 
+    private void visitOutputCache(WidgetOutputCache outputCache) throws Exception {
+        if (outputCache != null) {
+            visitAttribute("use-cache", Boolean.TRUE);
+            visitAttribute("cache-key", outputCache.getCacheKey());
+            visitCachePolicy(outputCache.getCachePolicy());
+        }
+    }
+
     private void visitSubWidgets(Collection<? extends ModelWidget> subWidgets) throws Exception {
         for (ModelWidget subWidget : subWidgets) {
             subWidget.accept(this);
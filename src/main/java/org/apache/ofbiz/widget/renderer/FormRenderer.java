@@ -19,10 +19,14 @@
 package org.apache.ofbiz.widget.renderer;
 
 import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -36,19 +40,25 @@ import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilMisc;
 import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.base.util.collections.LocalizedMap;
 import org.apache.ofbiz.base.util.collections.MapStack;
 import org.apache.ofbiz.base.util.string.FlexibleStringExpander;
-import org.apache.ofbiz.entity.GenericEntity;
+import org.apache.ofbiz.entity.Delegator;
 import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.util.EntityListIterator;
 import org.apache.ofbiz.widget.WidgetWorker;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
 import org.apache.ofbiz.widget.model.AbstractModelAction;
 import org.apache.ofbiz.widget.model.FieldInfo;
+import org.apache.ofbiz.widget.model.FormRowLayout;
+import org.apache.ofbiz.widget.model.ModelAction;
 import org.apache.ofbiz.widget.model.ModelForm;
 import org.apache.ofbiz.widget.model.ModelForm.FieldGroup;
 import org.apache.ofbiz.widget.model.ModelForm.FieldGroupBase;
 import org.apache.ofbiz.widget.model.ModelFormField;
 import org.apache.ofbiz.widget.model.ModelGrid;
+import org.apache.ofbiz.widget.model.UseWhenEvaluator;
 
 /**
  * A form rendering engine.
@@ -229,6 +239,7 @@ public class FormRenderer {
      *   value of the name attribute)
      */
     public void render(Appendable writer, Map<String, Object> context) throws Exception {
+        WidgetCacheInvalidator.recordWidget(modelForm);
         //  increment the paginator, only for list and multi forms
         if (modelForm instanceof ModelGrid) {
             WidgetWorker.incrementPaginatorNumber(context);
@@ -241,8 +252,14 @@ public class FormRenderer {
         modelForm.runFormActions(context);
 
         // if this is a list form, don't use Request Parameters
+        // and read the entity options once for all the rows with the same condition
+        boolean renderOptionValues = false;
         if (modelForm instanceof ModelGrid) {
             context.put("useRequestParameters", Boolean.FALSE);
+            if (context.get(ModelFormField.EntityOptions.RENDER_OPTION_VALUES) == null) {
+                context.put(ModelFormField.EntityOptions.RENDER_OPTION_VALUES, new HashMap<List<Object>, List<ModelFormField.OptionValue>>());
+                renderOptionValues = true;
+            }
         }
 
         // find the highest position number to get the max positions used
@@ -277,6 +294,9 @@ public class FormRenderer {
                         + " is not supported for form with name " + modelForm.getName());
             }
         }
+        if (renderOptionValues) {
+            context.remove(ModelFormField.EntityOptions.RENDER_OPTION_VALUES);
+        }
     }
 
     private int renderHeaderRow(Appendable writer, Map<String, Object> context)
@@ -519,14 +539,15 @@ public class FormRenderer {
         }
     }
 
-    // The fields in the three lists, usually created in the preprocessing phase
-    // of the renderItemRows method are rendered: this will create a visual representation
-    // of one row (corresponding to one position).
+    // The fields in the three lists of the row layout of the form are rendered:
+    // this will create a visual representation of one row (corresponding to one position).
     private void renderItemRow(Appendable writer, Map<String, Object> localContext, FormStringRenderer formStringRenderer,
-            boolean formPerItem, List<ModelFormField> hiddenIgnoredFieldList,
-            List<ModelFormField> innerDisplayHyperlinkFieldsBegin, List<ModelFormField> innerFormFields,
-            List<ModelFormField> innerDisplayHyperlinkFieldsEnd, List<ModelFormField> mainFieldList, int position,
+            boolean formPerItem, List<ModelFormField> hiddenIgnoredFieldList, FormRowLayout.Row row,
             int numOfColumns) throws IOException {
+        List<ModelFormField> innerDisplayHyperlinkFieldsBegin = row.getDisplayHyperlinkFieldsBegin();
+        List<ModelFormField> innerFormFields = row.getInputFields();
+        List<ModelFormField> innerDisplayHyperlinkFieldsEnd = row.getDisplayHyperlinkFieldsEnd();
+        List<ModelFormField> mainFieldList = row.getFieldList();
         int numOfCells = innerDisplayHyperlinkFieldsBegin.size() + innerDisplayHyperlinkFieldsEnd.size()
                 + (innerFormFields.size() > 0 ? 1 : 0);
         int numOfColumnsToSpan = numOfColumns - numOfCells + 1;
@@ -536,16 +557,7 @@ public class FormRenderer {
 
         // render row formatting open
         formStringRenderer.renderFormatItemRowOpen(writer, localContext, modelForm);
-        Iterator<ModelFormField> innerDisplayHyperlinkFieldsBeginIter = innerDisplayHyperlinkFieldsBegin.iterator();
-        Map<String, Integer> fieldCount = new HashMap<String, Integer>();
-        while (innerDisplayHyperlinkFieldsBeginIter.hasNext()) {
-            ModelFormField modelFormField = innerDisplayHyperlinkFieldsBeginIter.next();
-            if (fieldCount.containsKey(modelFormField.getFieldName())) {
-                fieldCount.put(modelFormField.getFieldName(), fieldCount.get(modelFormField.getFieldName()) + 1);
-            } else {
-                fieldCount.put(modelFormField.getFieldName(), 1);
-            }
-        }
+        Map<String, Integer> fieldCount = row.getDisplayHyperlinkFieldsBeginCount();
 
         if (modelForm.getGroupColumns()) {
             // do the first part of display and hyperlink fields
@@ -694,219 +706,151 @@ public class FormRenderer {
             iter = ((List<?>) obj).listIterator();
         }
 
-        // set low and high index
-        Paginator.getListLimits(modelForm, context, obj);
-
-        int listSize = ((Integer) context.get("listSize")).intValue();
-        int lowIndex = ((Integer) context.get("lowIndex")).intValue();
-        int highIndex = ((Integer) context.get("highIndex")).intValue();
+        try {
+            // set low and high index
+            Paginator.getListLimits(modelForm, context, obj);
 
-        // we're passed a subset of the list, so use (0, viewSize) range
-        if (modelForm.isOverridenListSize()) {
-            lowIndex = 0;
-            highIndex = ((Integer) context.get("viewSize")).intValue();
-        }
+            int listSize = ((Integer) context.get("listSize")).intValue();
+            int lowIndex = ((Integer) context.get("lowIndex")).intValue();
+            int highIndex = ((Integer) context.get("highIndex")).intValue();
 
-        if (iter != null) {
-            // render item rows
-            if (UtilValidate.isNotEmpty(context.get("itemIndex"))) {
-                if (UtilValidate.isNotEmpty(context.get("parentItemIndex"))) {
-                    context.put("parentItemIndex", context.get("parentItemIndex") + modelForm.getItemIndexSeparator() + context.get("itemIndex"));
-                } else {
-                    context.put("parentItemIndex", modelForm.getItemIndexSeparator() + context.get("itemIndex"));
-                }
+            // we're passed a subset of the list, so use (0, viewSize) range
+            if (modelForm.isOverridenListSize()) {
+                lowIndex = 0;
+                highIndex = ((Integer) context.get("viewSize")).intValue();
             }
-            int itemIndex = -1;
-            Object item = null;
-            context.put("wholeFormContext", context);
-            Map<String, Object> previousItem = new HashMap<String, Object>();
-            while ((item = safeNext(iter)) != null) {
-                itemIndex++;
-                if (itemIndex >= highIndex) {
-                    break;
-                }
-
-                // TODO: this is a bad design, for EntityListIterators we should skip to the lowIndex and go from there, MUCH more efficient...
-                if (itemIndex < lowIndex) {
-                    continue;
-                }
 
-                Map<String, Object> itemMap = UtilGenerics.checkMap(item);
-                MapStack<String> localContext = MapStack.create(context);
-                if (UtilValidate.isNotEmpty(modelForm.getListEntryName())) {
-                    localContext.put(modelForm.getListEntryName(), item);
-                } else {
-                    if (itemMap instanceof GenericEntity) {
-                        // Rendering code might try to modify the GenericEntity instance,
-                        // so we make a copy of it.
-                        Map<String, Object> genericEntityClone = UtilGenerics.cast(((GenericEntity) itemMap).clone());
-                        localContext.push(genericEntityClone);
+            if (iter != null) {
+                // render item rows
+                if (UtilValidate.isNotEmpty(context.get("itemIndex"))) {
+                    if (UtilValidate.isNotEmpty(context.get("parentItemIndex"))) {
+                        context.put("parentItemIndex", context.get("parentItemIndex") + modelForm.getItemIndexSeparator() + context.get("itemIndex"));
                     } else {
-                        localContext.push(itemMap);
+                        context.put("parentItemIndex", modelForm.getItemIndexSeparator() + context.get("itemIndex"));
                     }
                 }
-
-                localContext.push();
-                localContext.put("previousItem", previousItem);
-                previousItem = new HashMap<String, Object>();
-                previousItem.putAll(itemMap);
-
-                AbstractModelAction.runSubActions(modelForm.getRowActions(), localContext);
-
-                localContext.put("itemIndex", Integer.valueOf(itemIndex - lowIndex));
-                if (UtilValidate.isNotEmpty(context.get("renderFormSeqNumber"))) {
-                    localContext.put("formUniqueId", "_" + context.get("renderFormSeqNumber"));
-                }
-
-                if (Debug.verboseOn())
-                    Debug.logVerbose("In form got another row, context is: " + localContext, module);
-
-                // Check to see if there is a field, same name and same use-when (could come from extended form)
-                List<ModelFormField> tempFieldList = new LinkedList<ModelFormField>();
-                tempFieldList.addAll(modelForm.getFieldList());
-                for (int j = 0; j < tempFieldList.size(); j++) {
-                    ModelFormField modelFormField = tempFieldList.get(j);
-                    if (!modelFormField.isUseWhenEmpty()) {
-                        boolean shouldUse1 = modelFormField.shouldUse(localContext);
-                        for (int i = j + 1; i < tempFieldList.size(); i++) {
-                            ModelFormField curField = tempFieldList.get(i);
-                            if (curField.getName() != null && curField.getName().equals(modelFormField.getName())) {
-                                boolean shouldUse2 = curField.shouldUse(localContext);
-                                if (shouldUse1 == shouldUse2) {
-                                    tempFieldList.remove(i--);
-                                }
-                            } else {
-                                continue;
-                            }
+                int itemIndex = -1;
+                // go straight to the first item of the page instead of reading the items before it
+                if (lowIndex > 0 && obj instanceof List<?>) {
+                    List<?> list = (List<?>) obj;
+                    itemIndex = Math.min(lowIndex, list.size()) - 1;
+                    iter = list.listIterator(itemIndex + 1);
+                } else if (iter instanceof EntityListIterator) {
+                    // always positioned: counting the items moves the iterator to the last one
+                    try {
+                        if (lowIndex > 0) {
+                            ((EntityListIterator) iter).absolute(lowIndex);
+                            itemIndex = lowIndex - 1;
+                        } else {
+                            ((EntityListIterator) iter).beforeFirst();
                         }
+                    } catch (GenericEntityException e) {
+                        // not a scrollable result set, the items before the page are skipped below
+                        Debug.logWarning("Could not move the list form render EntityListIterator to row " + lowIndex + ": " + e.toString(), module);
                     }
                 }
+                Object item = null;
+                context.put("wholeFormContext", context);
+                Map<String, Object> previousItem = Collections.emptyMap();
+                // the conditions reading only the values fixed for the render are evaluated once for all the rows
+                Object outerRowInvariantResults = context.get(UseWhenEvaluator.ROW_INVARIANT_RESULTS);
+                if (setsRowVariables(modelForm.getRowActions())) {
+                    // the row actions may set the variables read by the conditions: no result is reused, not even those
+                    // of an enclosing list form (put, not removed: a MapStack only removes the entries of its top map)
+                    context.put(UseWhenEvaluator.ROW_INVARIANT_RESULTS, null);
+                } else {
+                    context.put(UseWhenEvaluator.ROW_INVARIANT_RESULTS, new HashMap<Object, Boolean>());
+                }
+                // the display-entity values of the page not read from the entity cache are read with one query per field
+                // instead of one per row
+                Object outerDisplayEntityValues = context.get(ModelFormField.DisplayEntityField.PREFETCHED_VALUES);
+                if (obj instanceof List<?>) {
+                    Map<ModelFormField.DisplayEntityField, Map<String, GenericValue>> displayEntityValues = prefetchDisplayEntityValues(context,
+                            (List<?>) obj, lowIndex, highIndex);
+                    if (displayEntityValues != null) {
+                        context.put(ModelFormField.DisplayEntityField.PREFETCHED_VALUES, displayEntityValues);
+                    }
+                }
+                while ((item = safeNext(iter)) != null) {
+                    itemIndex++;
+                    if (itemIndex >= highIndex) {
+                        break;
+                    }
 
-                // Each single item is rendered in one or more rows if its fields have
-                // different "position" attributes. All the fields with the same position
-                // are rendered in the same row.
-                // The default position is 1, and represents the main row:
-                // it contains the fields that are in the list header (columns).
-                // The positions lower than 1 are rendered in rows before the main one;
-                // positions higher than 1 are rendered after the main one.
-
-                // We get a sorted (by position, ascending) set of lists;
-                // each list contains all the fields with that position.
-                Collection<List<ModelFormField>> fieldListsByPosition = this.getFieldListsByPosition(tempFieldList);
-                //List hiddenIgnoredFieldList = getHiddenIgnoredFields(localContext, null, tempFieldList);
-                for (List<ModelFormField> fieldListByPosition : fieldListsByPosition) {
-                    // For each position (the subset of fields with the same position attribute)
-                    // we have two phases: preprocessing and rendering
-
-                    List<ModelFormField> innerDisplayHyperlinkFieldsBegin = new LinkedList<ModelFormField>();
-                    List<ModelFormField> innerFormFields = new LinkedList<ModelFormField>();
-                    List<ModelFormField> innerDisplayHyperlinkFieldsEnd = new LinkedList<ModelFormField>();
-
-                    // Preprocessing:
-                    // all the form fields are evaluated and the ones that will
-                    // appear in the form are put into three separate lists:
-                    // - hyperlink fields that will appear at the beginning of the row
-                    // - fields of other types
-                    // - hyperlink fields that will appear at the end of the row
-                    Iterator<ModelFormField> innerDisplayHyperlinkFieldIter = fieldListByPosition.iterator();
-                    int currentPosition = 1;
-                    while (innerDisplayHyperlinkFieldIter.hasNext()) {
-                        ModelFormField modelFormField = innerDisplayHyperlinkFieldIter.next();
-                        FieldInfo fieldInfo = modelFormField.getFieldInfo();
-
-                        // don't do any header for hidden or ignored fields
-                        if (fieldInfo.getFieldType() == FieldInfo.HIDDEN
-                                || fieldInfo.getFieldType() == FieldInfo.IGNORED) {
-                            continue;
-                        }
-
-                        if (FieldInfo.isInputFieldType(fieldInfo.getFieldType())) {
-                            // okay, now do the form cell
-                            break;
-                        }
+                    if (itemIndex < lowIndex) {
+                        continue;
+                    }
 
-                        // if this is a list or multi form don't skip here because we don't want to skip the table cell, will skip the actual field later
-                        if (!"list".equals(modelForm.getType()) && !"multi".equals(modelForm.getType())
-                                && !modelFormField.shouldUse(localContext)) {
-                            continue;
-                        }
-                        innerDisplayHyperlinkFieldsBegin.add(modelFormField);
-                        currentPosition = modelFormField.getPosition();
+                    // the item is not copied: the values set while rendering the row go to the map pushed
+                    // on top of it, and the item itself is only seen through a read-only view
+                    Map<String, Object> itemView = new ItemView(UtilGenerics.<String, Object>checkMap(item));
+                    MapStack<String> localContext = MapStack.create(context);
+                    if (UtilValidate.isNotEmpty(modelForm.getListEntryName())) {
+                        localContext.put(modelForm.getListEntryName(), item);
+                    } else {
+                        localContext.push(itemView);
                     }
-                    Iterator<ModelFormField> innerFormFieldIter = fieldListByPosition.iterator();
-                    while (innerFormFieldIter.hasNext()) {
-                        ModelFormField modelFormField = innerFormFieldIter.next();
-                        FieldInfo fieldInfo = modelFormField.getFieldInfo();
 
-                        // don't do any header for hidden or ignored fields
-                        if (fieldInfo.getFieldType() == FieldInfo.HIDDEN
-                                || fieldInfo.getFieldType() == FieldInfo.IGNORED) {
-                            continue;
-                        }
+                    localContext.push();
+                    localContext.put("previousItem", previousItem);
+                    previousItem = itemView;
 
-                        // skip all of the display/hyperlink fields
-                        if (!FieldInfo.isInputFieldType(fieldInfo.getFieldType())) {
-                            continue;
-                        }
+                    AbstractModelAction.runSubActions(modelForm.getRowActions(), localContext);
 
-                        // if this is a list or multi form don't skip here because we don't want to skip the table cell, will skip the actual field later
-                        if (!"list".equals(modelForm.getType()) && !"multi".equals(modelForm.getType())
-                                && !modelFormField.shouldUse(localContext)) {
-                            continue;
-                        }
-                        innerFormFields.add(modelFormField);
-                        currentPosition = modelFormField.getPosition();
+                    localContext.put("itemIndex", Integer.valueOf(itemIndex - lowIndex));
+                    if (UtilValidate.isNotEmpty(context.get("renderFormSeqNumber"))) {
+                        localContext.put("formUniqueId", "_" + context.get("renderFormSeqNumber"));
                     }
-                    while (innerDisplayHyperlinkFieldIter.hasNext()) {
-                        ModelFormField modelFormField = innerDisplayHyperlinkFieldIter.next();
-                        FieldInfo fieldInfo = modelFormField.getFieldInfo();
 
-                        // don't do any header for hidden or ignored fields
-                        if (fieldInfo.getFieldType() == FieldInfo.HIDDEN
-                                || fieldInfo.getFieldType() == FieldInfo.IGNORED) {
-                            continue;
-                        }
-
-                        // skip all non-display and non-hyperlink fields
-                        if (FieldInfo.isInputFieldType(fieldInfo.getFieldType())) {
-                            continue;
-                        }
+                    if (Debug.verboseOn())
+                        Debug.logVerbose("In form got another row, context is: " + localContext, module);
+
+                    // Each single item is rendered in one or more rows if its fields have
+                    // different "position" attributes. All the fields with the same position
+                    // are rendered in the same row.
+                    // The default position is 1, and represents the main row:
+                    // it contains the fields that are in the list header (columns).
+                    // The positions lower than 1 are rendered in rows before the main one;
+                    // positions higher than 1 are rendered after the main one.
+
+                    // The rows are sorted by position, ascending; the fields with the same name and the
+                    // same use-when result (could come from extended form) are only rendered once.
+                    for (FormRowLayout.Row row : modelForm.getRowLayout().getRows(localContext)) {
+                        List<ModelFormField> hiddenIgnoredFieldList = getHiddenIgnoredFields(localContext, null, row.getFieldList(),
+                                row.getPosition());
+
+                        // Rendering:
+                        // the fields in the three lists of the row layout
+                        // are now rendered: this will create a visual representation
+                        // of one row (for the current position).
+                        this.renderItemRow(writer, localContext, formStringRenderer, formPerItem, hiddenIgnoredFieldList, row,
+                                numOfColumns);
+                    } // iteration on positions
+                } // iteration on items
+                if (outerRowInvariantResults != null) {
+                    context.put(UseWhenEvaluator.ROW_INVARIANT_RESULTS, outerRowInvariantResults);
+                } else {
+                    context.remove(UseWhenEvaluator.ROW_INVARIANT_RESULTS);
+                }
+                if (outerDisplayEntityValues != null) {
+                    context.put(ModelFormField.DisplayEntityField.PREFETCHED_VALUES, outerDisplayEntityValues);
+                } else {
+                    context.remove(ModelFormField.DisplayEntityField.PREFETCHED_VALUES);
+                }
 
-                        // if this is a list or multi form don't skip here because we don't want to skip the table cell, will skip the actual field later
-                        if (!"list".equals(modelForm.getType()) && !"multi".equals(modelForm.getType())
-                                && !modelFormField.shouldUse(localContext)) {
-                            continue;
-                        }
-                        innerDisplayHyperlinkFieldsEnd.add(modelFormField);
-                        currentPosition = modelFormField.getPosition();
-                    }
-                    List<ModelFormField> hiddenIgnoredFieldList = getHiddenIgnoredFields(localContext, null, tempFieldList,
-                            currentPosition);
-
-                    // Rendering:
-                    // the fields in the three lists created in the preprocessing phase
-                    // are now rendered: this will create a visual representation
-                    // of one row (for the current position).
-                    if (innerDisplayHyperlinkFieldsBegin.size() > 0 || innerFormFields.size() > 0
-                            || innerDisplayHyperlinkFieldsEnd.size() > 0) {
-                        this.renderItemRow(writer, localContext, formStringRenderer, formPerItem, hiddenIgnoredFieldList,
-                                innerDisplayHyperlinkFieldsBegin, innerFormFields, innerDisplayHyperlinkFieldsEnd,
-                                fieldListByPosition, currentPosition, numOfColumns);
-                    }
-                } // iteration on positions
-            } // iteration on items
-
-            // reduce the highIndex if number of items falls short
-            if ((itemIndex + 1) < highIndex) {
-                highIndex = itemIndex + 1;
-                // if list size is overridden, use full listSize
-                context.put("highIndex", Integer.valueOf(modelForm.isOverridenListSize() ? listSize : highIndex));
+                // reduce the highIndex if number of items falls short
+                if ((itemIndex + 1) < highIndex) {
+                    highIndex = itemIndex + 1;
+                    // if list size is overridden, use full listSize
+                    context.put("highIndex", Integer.valueOf(modelForm.isOverridenListSize() ? listSize : highIndex));
+                }
+                context.put("actualPageSize", Integer.valueOf(highIndex - lowIndex));
             }
-            context.put("actualPageSize", Integer.valueOf(highIndex - lowIndex));
-
-            if (iter instanceof EntityListIterator) {
+        } finally {
+            // the iterator is closed even if the render fails, not to leak its connection
+            if (obj instanceof EntityListIterator) {
                 try {
-                    ((EntityListIterator) iter).close();
+                    ((EntityListIterator) obj).close();
                 } catch (GenericEntityException e) {
                     Debug.logError(e, "Error closing list form render EntityListIterator: " + e.toString(), module);
                 }
@@ -914,6 +858,78 @@ public class FormRenderer {
         }
     }
 
+    /**
+     * Reads the values of the display-entity fields with <code>cache="false"</code> for the items of the page, with
+     * the entries found in the items before running the row actions. A row reading another entry, or a field whose
+     * values can't be read together, falls back to reading its value alone. Returns <code>null</code> if no value
+     * was read.
+     */
+    private Map<ModelFormField.DisplayEntityField, Map<String, GenericValue>> prefetchDisplayEntityValues(Map<String, Object> context,
+            List<?> items, int lowIndex, int highIndex) {
+        Map<ModelFormField, Set<String>> keyValuesByField = new LinkedHashMap<ModelFormField, Set<String>>();
+        for (ModelFormField modelFormField : modelForm.getFieldList()) {
+            if (modelFormField.getFieldInfo().getFieldType() == FieldInfo.DISPLAY_ENTITY
+                    && !((ModelFormField.DisplayEntityField) modelFormField.getFieldInfo()).getCache()) {
+                keyValuesByField.put(modelFormField, new HashSet<String>());
+            }
+        }
+        if (keyValuesByField.isEmpty()) {
+            return null;
+        }
+        int toIndex = Math.min(highIndex, items.size());
+        for (int i = Math.max(lowIndex, 0); i < toIndex; i++) {
+            Object item = items.get(i);
+            if (item == null) {
+                break;
+            }
+            MapStack<String> itemContext = MapStack.create(context);
+            if (UtilValidate.isNotEmpty(modelForm.getListEntryName())) {
+                itemContext.put(modelForm.getListEntryName(), item);
+            } else {
+                itemContext.push(UtilGenerics.<String, Object>checkMap(item));
+            }
+            for (Map.Entry<ModelFormField, Set<String>> entry : keyValuesByField.entrySet()) {
+                String keyValue = entry.getKey().getEntry(itemContext);
+                if (UtilValidate.isNotEmpty(keyValue)) {
+                    entry.getValue().add(keyValue);
+                }
+            }
+        }
+        Map<ModelFormField.DisplayEntityField, Map<String, GenericValue>> displayEntityValues = null;
+        Delegator delegator = WidgetWorker.getDelegator(context);
+        for (Map.Entry<ModelFormField, Set<String>> entry : keyValuesByField.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            ModelFormField.DisplayEntityField displayEntityField = (ModelFormField.DisplayEntityField) entry.getKey().getFieldInfo();
+            try {
+                Map<String, GenericValue> values = displayEntityField.findValues(delegator, entry.getValue());
+                if (values != null) {
+                    if (displayEntityValues == null) {
+                        displayEntityValues = new HashMap<ModelFormField.DisplayEntityField, Map<String, GenericValue>>();
+                    }
+                    displayEntityValues.put(displayEntityField, values);
+                }
+            } catch (GenericEntityException e) {
+                Debug.logWarning(e, "Could not read the values of the display-entity field [" + entry.getKey().getName() + "] on form ["
+                        + modelForm.getName() + "], they will be read for each row", module);
+            }
+        }
+        return displayEntityValues;
+    }
+
+    /**
+     * Returns <code>true</code> if the row actions may set the variables read by the row-invariant conditions.
+     */
+    private static boolean setsRowVariables(List<ModelAction> rowActions) {
+        for (ModelAction rowAction : rowActions) {
+            if (rowAction instanceof AbstractModelAction.SetField) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void renderListFormString(Appendable writer, Map<String, Object> context,
             int positions) throws IOException {
         // render list/tabular type forms
@@ -1228,4 +1244,50 @@ public class FormRenderer {
             return null;
         }
     }
+
+    /**
+     * A read-only view of the map of a list form item, pushed on the row context instead of a copy of the item.
+     * Like a <code>HashMap</code> copy, it returns <code>null</code> for the keys the item doesn't have, while a
+     * <code>GenericEntity</code> fails on the names that are not fields of its entity. The localized reads of a
+     * <code>MapStack</code> go to the item when it is a <code>LocalizedMap</code>, like a <code>GenericEntity</code>
+     * giving the translation of its localized fields.
+     */
+    private static final class ItemView extends AbstractMap<String, Object> implements LocalizedMap<Object> {
+
+        private final Map<String, Object> itemMap;
+        private final LocalizedMap<?> localizedItem;
+
+        private ItemView(Map<String, Object> itemMap) {
+            this.itemMap = Collections.unmodifiableMap(itemMap);
+            this.localizedItem = itemMap instanceof LocalizedMap<?> ? (LocalizedMap<?>) itemMap : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return itemMap.containsKey(key);
+        }
+
+        @Override
+        public Object get(Object key) {
+            return itemMap.containsKey(key) ? itemMap.get(key) : null;
+        }
+
+        @Override
+        public Object get(String name, Locale locale) {
+            if (!itemMap.containsKey(name)) {
+                return null;
+            }
+            return localizedItem != null ? localizedItem.get(name, locale) : itemMap.get(name);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return itemMap.entrySet();
+        }
+
+        @Override
+        public int size() {
+            return itemMap.size();
+        }
+    }
 }
@@ -18,10 +18,8 @@
  *******************************************************************************/
 package org.apache.ofbiz.widget.renderer;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 
 import org.apache.commons.collections4.MapUtils;
 import org.apache.ofbiz.base.util.Debug;
@@ -187,23 +185,12 @@ public final class Paginator {
                         module);
             return;
         }
-        // if list is empty, do not render rows
-        Iterator<?> iter = null;
-        if (obj instanceof Iterator<?>) {
-            iter = (Iterator<?>) obj;
-        } else if (obj instanceof List<?>) {
-            iter = ((List<?>) obj).listIterator();
-        } else if (obj instanceof PagedList<?>) {
-            iter = ((PagedList<?>) obj).iterator();
-        }
-
         // set low and high index
         getListLimits(modelForm, context, obj);
 
         int listSize = ((Integer) context.get("listSize")).intValue();
         int lowIndex = ((Integer) context.get("lowIndex")).intValue();
         int highIndex = ((Integer) context.get("highIndex")).intValue();
-        // Debug.logInfo("preparePager: low - high = " + lowIndex + " - " + highIndex, module);
 
         // we're passed a subset of the list, so use (0, viewSize) range
         if (modelForm.isOverridenListSize()) {
@@ -211,42 +198,50 @@ public final class Paginator {
             highIndex = ((Integer) context.get("viewSize")).intValue();
         }
 
-        if (iter == null)
+        // the items are counted without reading them: they are read once, when the rows are rendered
+        int itemCount = getItemCount(modelForm, obj, listSize);
+        if (itemCount < 0) {
+            // an iterator can't be counted without consuming it
             return;
-
-        // count item rows
-        int itemIndex = -1;
-        Object item = safeNext(iter);
-        while (item != null && itemIndex < highIndex) {
-            itemIndex++;
-            item = safeNext(iter);
         }
 
-        // Debug.logInfo("preparePager: Found rows = " + itemIndex, module);
-
         // reduce the highIndex if number of items falls short
-        if ((itemIndex + 1) < highIndex) {
-            highIndex = itemIndex + 1;
+        if (itemCount < highIndex) {
+            highIndex = itemCount;
             // if list size is overridden, use full listSize
             context.put("highIndex", Integer.valueOf(modelForm.isOverridenListSize() ? listSize : highIndex));
         }
         context.put("actualPageSize", Integer.valueOf(highIndex - lowIndex));
+    }
 
-        if (iter instanceof EntityListIterator) {
+    /**
+     * Returns the number of items of the form list, or -1 if they can't be counted without reading them.
+     */
+    private static int getItemCount(ModelForm modelForm, Object entryList, int listSize) {
+        if (entryList instanceof List<?>) {
+            return ((List<?>) entryList).size();
+        } else if (entryList instanceof PagedList<?>) {
+            return ((PagedList<?>) entryList).getData().size();
+        } else if (entryList instanceof EntityListIterator) {
+            if (!modelForm.isOverridenListSize()) {
+                // already counted by getListLimits
+                return listSize;
+            }
+            EntityListIterator iter = (EntityListIterator) entryList;
             try {
-                ((EntityListIterator) iter).beforeFirst();
+                return iter.getResultsSizeAfterPartialList();
             } catch (GenericEntityException e) {
-                Debug.logError(e, "Error rewinding list form render EntityListIterator: " + e.toString(), module);
+                Debug.logError(e, "Error getting list size", module);
+            } finally {
+                // counting moved the iterator to the last item
+                try {
+                    iter.beforeFirst();
+                } catch (GenericEntityException e) {
+                    Debug.logError(e, "Error rewinding list form render EntityListIterator: " + e.toString(), module);
+                }
             }
         }
-    }
-
-    private static <X> X safeNext(Iterator<X> iterator) {
-        try {
-            return iterator.next();
-        } catch (NoSuchElementException e) {
-            return null;
-        }
+        return -1;
     }
 
     /**
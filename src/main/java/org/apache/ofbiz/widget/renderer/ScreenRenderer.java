@@ -56,6 +56,7 @@ import org.apache.ofbiz.webapp.control.LoginWorker;
 import org.apache.ofbiz.webapp.website.WebSiteWorker;
 import org.apache.ofbiz.widget.cache.GenericWidgetOutput;
 import org.apache.ofbiz.widget.cache.ScreenCache;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
 import org.apache.ofbiz.widget.cache.WidgetContextCacheKey;
 import org.apache.ofbiz.widget.model.ModelScreen;
 import org.apache.ofbiz.widget.model.ScreenFactory;
@@ -119,17 +120,37 @@ public class ScreenRenderer {
             //    and pass it to the renderScreenString;
             //    then we wrap its content and put it in the cache;
             //    and we attach it to the passed in writer
-            WidgetContextCacheKey wcck = new WidgetContextCacheKey(context);
+            WidgetContextCacheKey wcck;
+            if (modelScreen.getCacheKeyFields().isEmpty()) {
+                wcck = new WidgetContextCacheKey(context);
+            } else {
+                wcck = new WidgetContextCacheKey(modelScreen.getCacheKeyFields(), context);
+            }
             String screenCombinedName = resourceName + ":" + screenName;
             ScreenCache screenCache = new ScreenCache();
             GenericWidgetOutput gwo = screenCache.get(screenCombinedName, wcck);
             if (gwo == null) {
+                // record the entities read by the screen, to remove its outputs when they change
+                WidgetCacheInvalidator.register((Delegator) context.get("delegator"));
                 Writer sw = new StringWriter();
-                modelScreen.renderScreenString(sw, context, screenStringRenderer);
+                Set<String> entityNames;
+                long changeStamp = WidgetCacheInvalidator.getChangeStamp();
+                WidgetCacheInvalidator.startRecording();
+                try {
+                    modelScreen.renderScreenString(sw, context, screenStringRenderer);
+                } finally {
+                    entityNames = WidgetCacheInvalidator.stopRecording();
+                }
                 gwo = new GenericWidgetOutput(sw.toString());
-                screenCache.put(screenCombinedName, wcck, gwo);
+                WidgetCacheInvalidator.addDependencies(screenCombinedName, entityNames);
+                screenCache.put(screenCombinedName, wcck, gwo, modelScreen.getCachePolicy());
+                if (WidgetCacheInvalidator.isChangedSince(entityNames, changeStamp)) {
+                    // read before a change removing the outputs of the screen
+                    screenCache.remove(screenCombinedName, wcck);
+                }
                 writer.append(gwo.toString());
             } else {
+                WidgetCacheInvalidator.recordCachedWidget(screenCombinedName);
                 writer.append(gwo.toString());
             }
         } else {
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.renderer.macro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ofbiz.base.location.FlexibleLocation;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.apache.ofbiz.base.util.template.FreeMarkerWorker;
+
+import freemarker.core.Environment;
+import freemarker.template.SimpleHash;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+/**
+ * Widget Library - A FreeMarker macro library with pre-parsed macro invocations.
+ * <p>
+ * The macro renderers used to build a <code>&lt;@macro .../&gt;</code> FTL source string for
+ * every call and parse it into a new <code>Template</code>. Instead, this class parses one small
+ * invocation template per macro name and argument name set - the first time it is used - and
+ * passes the argument values to it through a hash variable of the rendering <code>Environment</code>.
+ * The values are handed to the macro as they are: no FTL string literal quoting or escaping is involved.
+ * </p>
+ * <p>
+ * Libraries are parsed once per process and shared by all the macro renderers. A library loaded from
+ * the file system is reloaded when its file is modified.
+ * </p>
+ */
+public final class MacroLibrary {
+
+    public static final String module = MacroLibrary.class.getName();
+    private static final UtilCache<String, MacroLibrary> macroLibraryCache = UtilCache.createUtilCache("widget.macro.library", 0, 0, false);
+    private static final UtilCache<String, Template> macroLibraryTemplateCache = UtilCache.createUtilCache("widget.macro.library.template", 0, 0, false);
+    /** The name of the environment variable holding the arguments of the current macro call. */
+    private static final String ARGUMENTS_VARIABLE = "widgetMacroArguments";
+
+    private final String macroLibraryPath;
+    private final Template template;
+    private final File macroLibraryFile;
+    private final long lastModified;
+    private final ConcurrentMap<String, Template> invocations = new ConcurrentHashMap<String, Template>();
+
+    /**
+     * Returns the <code>MacroLibrary</code> for the FreeMarker template at <code>macroLibraryPath</code>.
+     * Instances are shared by all renderers using the same library, a new instance is created
+     * when the library file has been modified since it was parsed.
+     */
+    public static MacroLibrary getMacroLibrary(String macroLibraryPath) throws TemplateException, IOException {
+        MacroLibrary macroLibrary = macroLibraryCache.get(macroLibraryPath);
+        if (macroLibrary != null && macroLibrary.isModified()) {
+            if (Debug.infoOn()) {
+                Debug.logInfo("Macro library [" + macroLibraryPath + "] has been modified, reloading it", module);
+            }
+            macroLibraryTemplateCache.remove(macroLibraryPath);
+            macroLibraryCache.remove(macroLibraryPath);
+            macroLibrary = null;
+        }
+        if (macroLibrary == null) {
+            macroLibrary = macroLibraryCache.putIfAbsentAndGet(macroLibraryPath, new MacroLibrary(macroLibraryPath));
+        }
+        return macroLibrary;
+    }
+
+    private MacroLibrary(String macroLibraryPath) throws TemplateException, IOException {
+        this.macroLibraryPath = macroLibraryPath;
+        this.macroLibraryFile = getLibraryFile(macroLibraryPath);
+        this.lastModified = macroLibraryFile != null ? macroLibraryFile.lastModified() : 0;
+        this.template = FreeMarkerWorker.getTemplate(macroLibraryPath, macroLibraryTemplateCache, FreeMarkerWorker.getDefaultOfbizConfig());
+    }
+
+    /** Returns the file the library is loaded from, or <code>null</code> if it is not a plain file (a jar entry for example). */
+    private static File getLibraryFile(String macroLibraryPath) {
+        try {
+            URL libraryUrl = FlexibleLocation.resolveLocation(macroLibraryPath);
+            if (libraryUrl != null && "file".equals(libraryUrl.getProtocol())) {
+                return new File(libraryUrl.toURI());
+            }
+        } catch (IOException e) {
+            Debug.logWarning(e, "Could not resolve macro library location [" + macroLibraryPath + "], it will not be reloaded when modified", module);
+        } catch (URISyntaxException e) {
+            Debug.logWarning(e, "Could not resolve macro library location [" + macroLibraryPath + "], it will not be reloaded when modified", module);
+        }
+        return null;
+    }
+
+    private boolean isModified() {
+        return macroLibraryFile != null && macroLibraryFile.lastModified() != lastModified;
+    }
+
+    public String getMacroLibraryPath() {
+        return macroLibraryPath;
+    }
+
+    /** Returns the parsed library template. */
+    public Template getTemplate() {
+        return template;
+    }
+
+    /**
+     * Creates the <code>Environment</code> used to call the library macros for output written to <code>writer</code>.
+     * Processing the library only registers its macros and top-level variables: it does not produce any output.
+     * An environment holds the state of one rendering and is not thread-safe, so it is created once per writer
+     * rather than shared.
+     */
+    public Environment createEnvironment(Appendable writer) throws TemplateException, IOException {
+        Map<String, Object> input = UtilMisc.toMap("key", null);
+        return FreeMarkerWorker.renderTemplate(template, input, writer);
+    }
+
+    /**
+     * Calls the macro <code>macroName</code> in <code>environment</code>, which must have been created from
+     * this library. The keys of <code>parameters</code> are the macro argument names.
+     */
+    public void executeMacro(Environment environment, String macroName, Map<String, Object> parameters) throws TemplateException, IOException {
+        if (parameters == null) {
+            parameters = Collections.emptyMap();
+        }
+        Template invocation = getInvocation(macroName, parameters);
+        environment.setVariable(ARGUMENTS_VARIABLE, new SimpleHash(parameters, environment.getObjectWrapper()));
+        environment.include(invocation);
+    }
+
+    private Template getInvocation(String macroName, Map<String, Object> parameters) throws IOException {
+        StringBuilder key = new StringBuilder(macroName);
+        for (String parameterName : parameters.keySet()) {
+            key.append(',').append(parameterName);
+        }
+        Template invocation = invocations.get(key.toString());
+        if (invocation == null) {
+            StringBuilder source = new StringBuilder("<@");
+            source.append(macroName);
+            for (String parameterName : parameters.keySet()) {
+                source.append(' ').append(parameterName).append('=');
+                source.append(ARGUMENTS_VARIABLE).append("[\"").append(parameterName).append("\"]");
+            }
+            source.append(" />");
+            invocation = new Template(macroLibraryPath + "#" + macroName, new StringReader(source.toString()), FreeMarkerWorker.getDefaultOfbizConfig());
+            Template existing = invocations.putIfAbsent(key.toString(), invocation);
+            if (existing != null) {
+                invocation = existing;
+            }
+        }
+        return invocation;
+    }
+}
@@ -19,11 +19,10 @@
 package org.apache.ofbiz.widget.renderer.macro;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -36,7 +35,6 @@ import org.apache.ofbiz.base.util.StringUtil;
 import org.apache.ofbiz.base.util.UtilCodec;
 import org.apache.ofbiz.base.util.UtilMisc;
 import org.apache.ofbiz.base.util.UtilValidate;
-import org.apache.ofbiz.base.util.template.FreeMarkerWorker;
 import org.apache.ofbiz.webapp.control.RequestHandler;
 import org.apache.ofbiz.webapp.taglib.ContentUrlTag;
 import org.apache.ofbiz.widget.WidgetWorker;
@@ -48,20 +46,18 @@ import org.apache.ofbiz.widget.model.ModelWidget;
 import org.apache.ofbiz.widget.renderer.MenuStringRenderer;
 
 import freemarker.core.Environment;
-import freemarker.template.Template;
 import freemarker.template.TemplateException;
 
 public class MacroMenuRenderer implements MenuStringRenderer {
 
     public static final String module = MacroMenuRenderer.class.getName();
-    private int macroCount = 999;
     private final Map<Appendable, Environment> environments = new HashMap<Appendable, Environment>();
-    private final Template macroLibrary;
+    private final MacroLibrary macroLibrary;
     private final HttpServletRequest request;
     private final HttpServletResponse response;
 
     public MacroMenuRenderer(String macroLibraryPath, HttpServletRequest request, HttpServletResponse response) throws TemplateException, IOException {
-        this.macroLibrary = FreeMarkerWorker.getTemplate(macroLibraryPath);
+        this.macroLibrary = MacroLibrary.getMacroLibrary(macroLibraryPath);
         this.request = request;
         this.response = response;
     }
@@ -95,46 +91,17 @@ public class MacroMenuRenderer implements MenuStringRenderer {
         return parameters;
     }
 
-    private void executeMacro(Appendable writer, String macro) throws IOException, TemplateException {
-        Environment environment = getEnvironment(writer);
-        Reader templateReader = new StringReader(macro);
-        macroCount++;
-        String templateName = toString().concat("_") + macroCount;
-        Template template = new Template(templateName, templateReader, FreeMarkerWorker.getDefaultOfbizConfig());
-        templateReader.close();
-        environment.include(template);
-    }
-
     private void executeMacro(Appendable writer, String macroName, Map<String, Object> macroParameters) throws IOException, TemplateException {
-        StringBuilder sb = new StringBuilder("<@");
-        sb.append(macroName);
-        if (macroParameters != null) {
-            for (Map.Entry<String, Object> parameter : macroParameters.entrySet()) {
-                sb.append(' ');
-                sb.append(parameter.getKey());
-                sb.append("=");
-                Object value = parameter.getValue();
-                if (value instanceof String) {
-                    sb.append('"');
-                    sb.append(((String) value).replaceAll("\"", "\\\\\""));
-                    sb.append('"');
-                } else {
-                    sb.append(value);
-                }
-            }
-        }
-        sb.append(" />");
         if (Debug.verboseOn()) {
-            Debug.logVerbose("Executing macro: " + sb, module);
+            Debug.logVerbose("Executing macro: " + macroName + " " + macroParameters, module);
         }
-        executeMacro(writer, sb.toString());
+        macroLibrary.executeMacro(getEnvironment(writer), macroName, macroParameters);
     }
 
     private Environment getEnvironment(Appendable writer) throws TemplateException, IOException {
         Environment environment = environments.get(writer);
         if (environment == null) {
-            Map<String, Object> input = UtilMisc.toMap("key", null);
-            environment = FreeMarkerWorker.renderTemplate(macroLibrary, input, writer);
+            environment = macroLibrary.createEnvironment(writer);
             environments.put(writer, environment);
         }
         return environment;
@@ -227,28 +194,16 @@ public class MacroMenuRenderer implements MenuStringRenderer {
         parameters.put("linkType", linkType);
         String linkUrl = "";
         String actionUrl = "";
-        StringBuilder targetParameters = new StringBuilder();
+        Object targetParameters = "";
         if ("hidden-form".equals(linkType) || "layered-modal".equals(linkType)) {
             StringBuilder sb = new StringBuilder();
             WidgetWorker.buildHyperlinkUrl(sb, target, link.getUrlMode(), null, link.getPrefix(context), link.getFullPath(), link.getSecure(), link.getEncode(), request, response, context);
             actionUrl = sb.toString();
-            targetParameters.append("[");
+            List<Map<String, String>> parameterList = new LinkedList<Map<String, String>>();
             for (Map.Entry<String, String> parameter : link.getParameterMap(context).entrySet()) {
-                if (targetParameters.length() > 1) {
-                    targetParameters.append(",");
-                }
-                targetParameters.append("{'name':'");
-                targetParameters.append(parameter.getKey());
-                targetParameters.append("'");
-                targetParameters.append(",'value':'");
-                targetParameters.append(parameter.getValue());
-                targetParameters.append("'}");
+                parameterList.add(UtilMisc.toMap("name", parameter.getKey(), "value", parameter.getValue()));
             }
-            targetParameters.append("]");
-
-        }
-        if (targetParameters.length() == 0) {
-            targetParameters.append("\"\"");
+            targetParameters = parameterList;
         }
         if (UtilValidate.isNotEmpty(target)) {
             if (!"hidden-form".equals(linkType)) {
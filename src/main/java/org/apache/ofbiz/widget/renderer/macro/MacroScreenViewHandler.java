@@ -20,6 +20,8 @@ package org.apache.ofbiz.widget.renderer.macro;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -34,6 +36,7 @@ import org.apache.ofbiz.base.util.UtilCodec;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilProperties;
 import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.base.util.cache.UtilCache;
 import org.apache.ofbiz.base.util.collections.MapStack;
 import org.apache.ofbiz.entity.Delegator;
 import org.apache.ofbiz.entity.util.EntityUtilProperties;
@@ -56,7 +59,11 @@ public class MacroScreenViewHandler extends AbstractViewHandler {
 
     public static final String module = MacroScreenViewHandler.class.getName();
 
+    private static final String[] macroLibraryResourceTypes = { "VT_SCRN_MACRO_LIB", "VT_FORM_MACRO_LIB", "VT_TREE_MACRO_LIB", "VT_MENU_MACRO_LIB" };
+
     protected ServletContext servletContext = null;
+    /** Theme library paths, shared by all the view handlers; expired after a minute so theme changes in the database are picked up. */
+    private static final UtilCache<String, Map<String, String>> themeMacroLibraryCache = UtilCache.createUtilCache("widget.macro.themeLibraries", 0, 60000, false);
 
     public void init(ServletContext context) throws ViewHandlerException {
         this.servletContext = context;
@@ -72,41 +79,18 @@ public class MacroScreenViewHandler extends AbstractViewHandler {
         if (userPreferences != null) {
             String visualThemeId = (String) userPreferences.get("VISUAL_THEME");
             if (visualThemeId != null) {
-                LocalDispatcher dispatcher = (LocalDispatcher) context.get("dispatcher");
-                Map<String, Object> serviceCtx = dispatcher.getDispatchContext().makeValidContext("getVisualThemeResources",
-                        ModelService.IN_PARAM, context);
-                serviceCtx.put("visualThemeId", visualThemeId);
-                Map<String, Object> serviceResult = dispatcher.runSync("getVisualThemeResources", serviceCtx);
-                if (ServiceUtil.isSuccess(serviceResult)) {
-                    Map<String, List<String>> themeResources = UtilGenerics.cast(serviceResult.get("themeResources"));
-                    List<String> resourceList = UtilGenerics.cast(themeResources.get("VT_SCRN_MACRO_LIB"));
-                    if (resourceList != null && !resourceList.isEmpty()) {
-                        String macroLibraryPath = resourceList.get(0);
-                        if (macroLibraryPath != null) {
-                            screenMacroLibraryPath = macroLibraryPath;
-                        }
-                    }
-                    resourceList = UtilGenerics.cast(themeResources.get("VT_FORM_MACRO_LIB"));
-                    if (resourceList != null && !resourceList.isEmpty()) {
-                        String macroLibraryPath = resourceList.get(0);
-                        if (macroLibraryPath != null) {
-                            formMacroLibraryPath = macroLibraryPath;
-                        }
-                    }
-                    resourceList = UtilGenerics.cast(themeResources.get("VT_TREE_MACRO_LIB"));
-                    if (resourceList != null && !resourceList.isEmpty()) {
-                        String macroLibraryPath = resourceList.get(0);
-                        if (macroLibraryPath != null) {
-                            treeMacroLibraryPath = macroLibraryPath;
-                        }
-                    }
-                    resourceList = UtilGenerics.cast(themeResources.get("VT_MENU_MACRO_LIB"));
-                    if (resourceList != null && !resourceList.isEmpty()) {
-                        String macroLibraryPath = resourceList.get(0);
-                        if (macroLibraryPath != null) {
-                            menuMacroLibraryPath = macroLibraryPath;
-                        }
-                    }
+                Map<String, String> themeMacroLibraries = getThemeMacroLibraries(visualThemeId, context);
+                if (themeMacroLibraries.containsKey("VT_SCRN_MACRO_LIB")) {
+                    screenMacroLibraryPath = themeMacroLibraries.get("VT_SCRN_MACRO_LIB");
+                }
+                if (themeMacroLibraries.containsKey("VT_FORM_MACRO_LIB")) {
+                    formMacroLibraryPath = themeMacroLibraries.get("VT_FORM_MACRO_LIB");
+                }
+                if (themeMacroLibraries.containsKey("VT_TREE_MACRO_LIB")) {
+                    treeMacroLibraryPath = themeMacroLibraries.get("VT_TREE_MACRO_LIB");
+                }
+                if (themeMacroLibraries.containsKey("VT_MENU_MACRO_LIB")) {
+                    menuMacroLibraryPath = themeMacroLibraries.get("VT_MENU_MACRO_LIB");
                 }
             }
         }
@@ -127,6 +111,36 @@ public class MacroScreenViewHandler extends AbstractViewHandler {
         return screenStringRenderer;
     }
 
+    /**
+     * Returns the macro library paths of the visual theme <code>visualThemeId</code>, keyed by resource type
+     * (<code>VT_SCRN_MACRO_LIB</code>, <code>VT_FORM_MACRO_LIB</code>, ...). The paths are looked up at most
+     * once a minute per theme, the libraries themselves are shared through {@link MacroLibrary}.
+     */
+    private Map<String, String> getThemeMacroLibraries(String visualThemeId, Map<String, Object> context) throws GeneralException {
+        Map<String, String> themeMacroLibraries = themeMacroLibraryCache.get(visualThemeId);
+        if (themeMacroLibraries != null) {
+            return themeMacroLibraries;
+        }
+        LocalDispatcher dispatcher = (LocalDispatcher) context.get("dispatcher");
+        Map<String, Object> serviceCtx = dispatcher.getDispatchContext().makeValidContext("getVisualThemeResources",
+                ModelService.IN_PARAM, context);
+        serviceCtx.put("visualThemeId", visualThemeId);
+        Map<String, Object> serviceResult = dispatcher.runSync("getVisualThemeResources", serviceCtx);
+        themeMacroLibraries = new HashMap<String, String>();
+        if (!ServiceUtil.isSuccess(serviceResult)) {
+            // not cached, the lookup will be retried on the next request
+            return themeMacroLibraries;
+        }
+        Map<String, List<String>> themeResources = UtilGenerics.cast(serviceResult.get("themeResources"));
+        for (String resourceTypeEnumId : macroLibraryResourceTypes) {
+            List<String> resourceList = UtilGenerics.cast(themeResources.get(resourceTypeEnumId));
+            if (resourceList != null && !resourceList.isEmpty() && resourceList.get(0) != null) {
+                themeMacroLibraries.put(resourceTypeEnumId, resourceList.get(0));
+            }
+        }
+        return themeMacroLibraryCache.putIfAbsentAndGet(visualThemeId, Collections.unmodifiableMap(themeMacroLibraries));
+    }
+
     public void render(String name, String page, String info, String contentType, String encoding, HttpServletRequest request, HttpServletResponse response) throws ViewHandlerException {
         try {
             Writer writer = response.getWriter();
@@ -19,9 +19,8 @@
 package org.apache.ofbiz.widget.renderer.macro;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,9 +31,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.StringUtil;
 import org.apache.ofbiz.base.util.UtilGenerics;
-import org.apache.ofbiz.base.util.UtilMisc;
 import org.apache.ofbiz.base.util.UtilValidate;
-import org.apache.ofbiz.base.util.template.FreeMarkerWorker;
 import org.apache.ofbiz.webapp.control.RequestHandler;
 import org.apache.ofbiz.webapp.taglib.ContentUrlTag;
 import org.apache.ofbiz.widget.WidgetWorker;
@@ -45,7 +42,6 @@ import org.apache.ofbiz.widget.renderer.ScreenStringRenderer;
 import org.apache.ofbiz.widget.renderer.TreeStringRenderer;
 
 import freemarker.core.Environment;
-import freemarker.template.Template;
 import freemarker.template.TemplateException;
 
 /**
@@ -55,28 +51,27 @@ import freemarker.template.TemplateException;
 public class MacroTreeRenderer implements TreeStringRenderer {
 
     public static final String module = MacroTreeRenderer.class.getName();
-    private Template macroLibrary;
+    private MacroLibrary macroLibrary;
+    private Appendable writer;
     private Environment environment;
 
 
     public MacroTreeRenderer(String macroLibraryPath, Appendable writer) throws TemplateException, IOException {
-        this.macroLibrary = FreeMarkerWorker.getTemplate(macroLibraryPath);
-        Map<String, Object> input = UtilMisc.toMap("key", null);
-        this.environment = FreeMarkerWorker.renderTemplate(this.macroLibrary, input, writer);
+        this.macroLibrary = MacroLibrary.getMacroLibrary(macroLibraryPath);
+        this.writer = writer;
     }
 
-    private void executeMacro(String macro) throws IOException {
+    private void executeMacro(String macroName, Map<String, Object> parameters) throws IOException {
         try {
-            Reader templateReader = new StringReader(macro);
-            // FIXME: I am using a Date as an hack to provide a unique name for the template...
-            Template template = new Template((new java.util.Date()).toString(), templateReader,
-                    FreeMarkerWorker.getDefaultOfbizConfig());
-            templateReader.close();
-            this.environment.include(template);
+            if (this.environment == null) {
+                // created on first use: trees are only rendered by a few screens
+                this.environment = macroLibrary.createEnvironment(this.writer);
+            }
+            macroLibrary.executeMacro(this.environment, macroName, parameters);
         } catch (TemplateException e) {
-            Debug.logError(e, "Error rendering tree thru ftl", module);
+            Debug.logError(e, "Error rendering tree macro [" + macroName + "] thru ftl", module);
         } catch (IOException e) {
-            Debug.logError(e, "Error rendering tree thru ftl", module);
+            Debug.logError(e, "Error rendering tree macro [" + macroName + "] thru ftl", module);
         }
     }
  
@@ -87,16 +82,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
      * @param modelWidget The widget
      */
     public void renderBeginningBoundaryComment(Appendable writer, String widgetType, ModelWidget modelWidget) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@formatBoundaryComment ");
-        sr.append(" boundaryType=\"");
-        sr.append("Begin");
-        sr.append("\" widgetType=\"");
-        sr.append(widgetType);
-        sr.append("\" widgetName=\"");
-        sr.append(modelWidget.getBoundaryCommentName());
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("boundaryType", "Begin");
+        parameters.put("widgetType", widgetType);
+        parameters.put("widgetName", modelWidget.getBoundaryCommentName());
+        executeMacro("formatBoundaryComment", parameters);
     }
     
     /**
@@ -106,16 +96,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
      * @param modelWidget The widget
      */
     public void renderEndingBoundaryComment(Appendable writer, String widgetType, ModelWidget modelWidget) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@formatBoundaryComment ");
-        sr.append(" boundaryType=\"");
-        sr.append("End");
-        sr.append("\" widgetType=\"");
-        sr.append(widgetType);
-        sr.append("\" widgetName=\"");
-        sr.append(modelWidget.getBoundaryCommentName());
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("boundaryType", "End");
+        parameters.put("widgetType", widgetType);
+        parameters.put("widgetName", modelWidget.getBoundaryCommentName());
+        executeMacro("formatBoundaryComment", parameters);
     }
     
     public void renderNodeBegin(Appendable writer, Map<String, Object> context, ModelTree.ModelNode node, int depth) throws IOException {
@@ -130,12 +115,9 @@ public class MacroTreeRenderer implements TreeStringRenderer {
             style = "basic-tree";
         }
  
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderNodeBegin ");
-        sr.append(" style=\"");
-        sr.append(style);
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("style", style);
+        executeMacro("renderNodeBegin", parameters);
 
         String pkName = node.getPkName(context);
         String entityId = null;
@@ -207,14 +189,10 @@ public class MacroTreeRenderer implements TreeStringRenderer {
 
     public void renderNodeEnd(Appendable writer, Map<String, Object> context, ModelTree.ModelNode node) throws IOException {
         Boolean processChildren = (Boolean) context.get("processChildren");
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderNodeEnd ");
-        sr.append(" processChildren=");
-        sr.append(Boolean.toString(processChildren.booleanValue()));
-        sr.append(" isRootNode=");
-        sr.append(Boolean.toString(node.isRootNode()));
-        sr.append(" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("processChildren", processChildren.booleanValue());
+        parameters.put("isRootNode", node.isRootNode());
+        executeMacro("renderNodeEnd", parameters);
         if (node.isRootNode()) {
             if (ModelWidget.widgetBoundaryCommentsEnabled(context)) {
                 renderEndingBoundaryComment(writer, "Tree Widget", node.getModelTree());
@@ -225,12 +203,9 @@ public class MacroTreeRenderer implements TreeStringRenderer {
     public void renderLastElement(Appendable writer, Map<String, Object> context, ModelTree.ModelNode node) throws IOException {
         Boolean processChildren = (Boolean) context.get("processChildren");
         if (processChildren.booleanValue()) {            
-            StringWriter sr = new StringWriter();
-            sr.append("<@renderLastElement ");
-            sr.append("style=\"");
-            sr.append("basic-tree");
-            sr.append("\" />");
-            executeMacro(sr.toString());
+            Map<String, Object> parameters = new HashMap<String, Object>();
+            parameters.put("style", "basic-tree");
+            executeMacro("renderLastElement", parameters);
         }
     }
 
@@ -239,16 +214,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
         String style = label.getStyle(context);
         String labelText = label.getText(context);
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderLabel ");
-        sr.append("id=\"");
-        sr.append(id);
-        sr.append("\" style=\"");
-        sr.append(style);
-        sr.append("\" labelText=\"");
-        sr.append(labelText);        
-        sr.append("\" />");
-        executeMacro(sr.toString());        
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("id", id);
+        parameters.put("style", style);
+        parameters.put("labelText", labelText);
+        executeMacro("renderLabel", parameters);
     }
 
     public void renderLink(Appendable writer, Map<String, Object> context, ModelTree.ModelNode.Link link) throws IOException {
@@ -277,26 +247,16 @@ public class MacroTreeRenderer implements TreeStringRenderer {
             imgStr = sw.toString();
         }
         
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderLink ");
-        sr.append("id=\"");
-        sr.append(id);
-        sr.append("\" style=\"");
-        sr.append(style);
-        sr.append("\" name=\"");
-        sr.append(name);
-        sr.append("\" title=\"");
-        sr.append(title);
-        sr.append("\" targetWindow=\"");
-        sr.append(targetWindow);  
-        sr.append("\" linkUrl=\"");
-        sr.append(linkUrl);     
-        sr.append("\" linkText=\"");
-        sr.append(linkText);           
-        sr.append("\" imgStr=\"");
-        sr.append(imgStr.replaceAll("\"", "\\\\\""));
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("id", id);
+        parameters.put("style", style);
+        parameters.put("name", name);
+        parameters.put("title", title);
+        parameters.put("targetWindow", targetWindow);
+        parameters.put("linkUrl", linkUrl.toString());
+        parameters.put("linkText", linkText);
+        parameters.put("imgStr", imgStr);
+        executeMacro("renderLink", parameters);
     }
   
     public void renderImage(Appendable writer, Map<String, Object> context, ModelTree.ModelNode.Image image) throws IOException {
@@ -338,26 +298,16 @@ public class MacroTreeRenderer implements TreeStringRenderer {
         } else {
             urlString = src;
         }
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderImage ");
-        sr.append("src=\"");
-        sr.append(src);
-        sr.append("\" id=\"");
-        sr.append(id);
-        sr.append("\" style=\"");
-        sr.append(style);
-        sr.append("\" wid=\"");
-        sr.append(wid);
-        sr.append("\" hgt=\"");
-        sr.append(hgt);
-        sr.append("\" border=\"");
-        sr.append(border);
-        sr.append("\" alt=\"");
-        sr.append(alt);
-        sr.append("\" urlString=\"");
-        sr.append(urlString);
-        sr.append("\" />");
-        executeMacro(sr.toString());        
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("src", src);
+        parameters.put("id", id);
+        parameters.put("style", style);
+        parameters.put("wid", wid);
+        parameters.put("hgt", hgt);
+        parameters.put("border", border);
+        parameters.put("alt", alt);
+        parameters.put("urlString", urlString);
+        executeMacro("renderImage", parameters);
     }
 
     public ScreenStringRenderer getScreenStringRenderer(Map<String, Object> context) {
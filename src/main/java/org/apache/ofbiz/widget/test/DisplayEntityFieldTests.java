@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.model.FormFactory;
+import org.apache.ofbiz.widget.model.ModelForm;
+import org.apache.ofbiz.widget.model.ModelFormField;
+import org.apache.ofbiz.widget.renderer.FormRenderer;
+import org.apache.ofbiz.widget.renderer.FormStringRenderer;
+
+/**
+ * Compares the display-entity values read for all the rows of a list form page with the ones read by
+ * <code>findOne</code> for each row, with the forms of <code>testdef/DisplayEntityForms.xml</code>.
+ */
+public class DisplayEntityFieldTests extends OFBizTestCase {
+
+    public static final String module = DisplayEntityFieldTests.class.getName();
+    private static final String formLocation = "component://widget/testdef/DisplayEntityForms.xml";
+    private static final String missingTypeId = "WIDGET_DISPLAY_MISSING";
+
+    public DisplayEntityFieldTests(String name) {
+        super(name);
+    }
+
+    private ModelForm getForm(String formName) throws Exception {
+        return FormFactory.getFormFromLocation(formLocation, formName, delegator.getModelReader(), dispatcher.getDispatchContext());
+    }
+
+    private static ModelFormField.DisplayEntityField getDisplayEntityField(ModelForm form) {
+        for (ModelFormField modelFormField : form.getFieldList()) {
+            if ("testingTypeId".equals(modelFormField.getName())) {
+                return (ModelFormField.DisplayEntityField) modelFormField.getFieldInfo();
+            }
+        }
+        throw new IllegalStateException("No testingTypeId field");
+    }
+
+    private void storeTestingTypes() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            delegator.createOrStore(delegator.makeValue("TestingType", UtilMisc.toMap("testingTypeId", "WIDGET_DISPLAY_" + i,
+                    "description", "Widget display " + i)));
+        }
+        delegator.removeByAnd("TestingType", UtilMisc.toMap("testingTypeId", missingTypeId));
+    }
+
+    /** Returns the description <code>findOne</code> gives for <code>testingTypeId</code>, the key itself if there is no value. */
+    private String findDescription(String testingTypeId) throws Exception {
+        GenericValue testingType = delegator.findOne("TestingType", false, "testingTypeId", testingTypeId);
+        return testingType != null ? "[" + testingType.getString("description") + "]" : testingTypeId;
+    }
+
+    /** Renders <code>form</code> and returns the description of each display field, in the order of the rows. */
+    private List<String> renderDescriptions(ModelForm form, List<Map<String, Object>> items) throws Exception {
+        final List<String> descriptions = new ArrayList<String>();
+        FormStringRenderer renderer = (FormStringRenderer) Proxy.newProxyInstance(DisplayEntityFieldTests.class.getClassLoader(),
+                new Class<?>[] { FormStringRenderer.class }, new InvocationHandler() {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("renderDisplayField".equals(method.getName())) {
+                            descriptions.add(((ModelFormField.DisplayField) args[2]).getDescription((Map<String, Object>) args[1]));
+                        }
+                        return null;
+                    }
+                });
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("locale", Locale.US);
+        context.put("delegator", delegator);
+        context.put("dispatcher", dispatcher);
+        context.put("displayEntityItems", items);
+        new FormRenderer(form, renderer).render(new StringWriter(), context);
+        assertNull("The prefetched values are removed after the render", context.get(ModelFormField.DisplayEntityField.PREFETCHED_VALUES));
+        return descriptions;
+    }
+
+    public void testFindValues() throws Exception {
+        storeTestingTypes();
+        ModelFormField.DisplayEntityField displayEntityField = getDisplayEntityField(getForm("DisplayEntityList"));
+        List<String> keyValues = UtilMisc.toList("WIDGET_DISPLAY_1", "WIDGET_DISPLAY_2", missingTypeId);
+        Map<String, GenericValue> values = displayEntityField.findValues(delegator, keyValues);
+        assertEquals("Each key value has an entry", keyValues.size(), values.size());
+        for (String keyValue : keyValues) {
+            assertTrue("Key value " + keyValue + " is read", values.containsKey(keyValue));
+            assertEquals("Key value " + keyValue + " gets the value of findOne", delegator.findOne("TestingType", false, "testingTypeId", keyValue),
+                    values.get(keyValue));
+        }
+        assertNull("A missing key value has no value", values.get(missingTypeId));
+    }
+
+    public void testCachedValuesNotBatched() throws Exception {
+        storeTestingTypes();
+        ModelFormField.DisplayEntityField displayEntityField = getDisplayEntityField(getForm("DisplayEntityCachedList"));
+        assertTrue(displayEntityField.getCache());
+        assertNull("The values read from the entity cache are read one at a time",
+                displayEntityField.findValues(delegator, UtilMisc.toList("WIDGET_DISPLAY_1", "WIDGET_DISPLAY_2")));
+    }
+
+    public void testRenderedDescriptions() throws Exception {
+        storeTestingTypes();
+        List<Map<String, Object>> items = new ArrayList<Map<String, Object>>();
+        items.add(UtilMisc.<String, Object>toMap("testingTypeId", "WIDGET_DISPLAY_1"));
+        items.add(UtilMisc.<String, Object>toMap("testingTypeId", missingTypeId));
+        // the row actions replace these keys: WIDGET_DISPLAY_3 is read by no item, so it is not prefetched
+        items.add(UtilMisc.<String, Object>toMap("testingTypeId", "WIDGET_DISPLAY_1", "replacementTypeId", "WIDGET_DISPLAY_3"));
+        items.add(UtilMisc.<String, Object>toMap("testingTypeId", "WIDGET_DISPLAY_2", "replacementTypeId", missingTypeId));
+        items.add(UtilMisc.<String, Object>toMap("testingTypeId", "WIDGET_DISPLAY_2"));
+        List<String> expected = UtilMisc.toList(findDescription("WIDGET_DISPLAY_1"), findDescription(missingTypeId),
+                findDescription("WIDGET_DISPLAY_3"), findDescription(missingTypeId), findDescription("WIDGET_DISPLAY_2"));
+        assertEquals("[Widget display 3]", expected.get(2));
+        assertEquals(missingTypeId, expected.get(1));
+        assertEquals("Prefetched descriptions", expected, renderDescriptions(getForm("DisplayEntityList"), items));
+        assertEquals("Cached descriptions", UtilMisc.toList(findDescription("WIDGET_DISPLAY_1"), findDescription(missingTypeId),
+                findDescription("WIDGET_DISPLAY_1"), findDescription("WIDGET_DISPLAY_2"), findDescription("WIDGET_DISPLAY_2")),
+                renderDescriptions(getForm("DisplayEntityCachedList"), items));
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.model.GridFactory;
+import org.apache.ofbiz.widget.model.ModelFormField;
+import org.apache.ofbiz.widget.model.ModelGrid;
+
+/**
+ * Compares the drop-down option values read for each row of a list form with the ones shared
+ * by the rows during a render, with the grids of <code>testdef/EntityOptionsGrids.xml</code>. Also checks
+ * the option values kept across requests are read again when their entity changes.
+ */
+public class EntityOptionsTests extends OFBizTestCase {
+
+    public static final String module = EntityOptionsTests.class.getName();
+    private static final String gridLocation = "component://widget/testdef/EntityOptionsGrids.xml";
+
+    public EntityOptionsTests(String name) {
+        super(name);
+    }
+
+    private ModelFormField.DropDownField getDropDown(String gridName) throws Exception {
+        ModelGrid grid = GridFactory.getGridFromLocation(gridLocation, gridName, delegator.getModelReader(), dispatcher.getDispatchContext());
+        for (ModelFormField modelFormField : grid.getFieldList()) {
+            if ("testingTypeId".equals(modelFormField.getName())) {
+                return (ModelFormField.DropDownField) modelFormField.getFieldInfo();
+            }
+        }
+        throw new IllegalStateException("No testingTypeId field");
+    }
+
+    private void storeTestingType() throws Exception {
+        GenericValue testingType = delegator.makeValue("TestingType", UtilMisc.toMap("testingTypeId", "WIDGET_OPTIONS_TEST", "description", "Widget options test"));
+        delegator.createOrStore(testingType);
+    }
+
+    private static String toString(List<ModelFormField.OptionValue> optionValues) {
+        StringBuilder sb = new StringBuilder();
+        for (ModelFormField.OptionValue optionValue : optionValues) {
+            sb.append(optionValue.getKey()).append('=').append(optionValue.getDescription()).append(';');
+        }
+        return sb.toString();
+    }
+
+    public void testRenderOptionValues() throws Exception {
+        storeTestingType();
+        ModelFormField.DropDownField dropDown = getDropDown("EntityOptionsGrid");
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("description", "Row description");
+        String rowOptionValues = toString(dropDown.getAllOptionValues(context, delegator));
+        assertTrue(rowOptionValues.contains("WIDGET_OPTIONS_TEST=Widget options test [WIDGET_OPTIONS_TEST];"));
+
+        Map<List<Object>, List<ModelFormField.OptionValue>> renderOptionValues = new HashMap<List<Object>, List<ModelFormField.OptionValue>>();
+        context.put(ModelFormField.EntityOptions.RENDER_OPTION_VALUES, renderOptionValues);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Row " + i + " gets the option values read for each row", rowOptionValues,
+                    toString(dropDown.getAllOptionValues(context, delegator)));
+        }
+        assertEquals("The option values are read once for the render", 1, renderOptionValues.size());
+    }
+
+    public void testRowDescription() throws Exception {
+        storeTestingType();
+        ModelFormField.DropDownField dropDown = getDropDown("EntityOptionsRowGrid");
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put(ModelFormField.EntityOptions.RENDER_OPTION_VALUES, new HashMap<List<Object>, List<ModelFormField.OptionValue>>());
+        context.put("rowLabel", "first");
+        assertTrue(toString(dropDown.getAllOptionValues(context, delegator)).contains("=first;"));
+        context.put("rowLabel", "second");
+        assertTrue("A description reading the row is expanded for each row",
+                toString(dropDown.getAllOptionValues(context, delegator)).contains("=second;"));
+    }
+
+    public void testSharedOptionValues() throws Exception {
+        storeTestingType();
+        ModelFormField.DropDownField dropDown = getDropDown("EntityOptionsCachedGrid");
+        Map<String, Object> context = new HashMap<String, Object>();
+        List<ModelFormField.OptionValue> optionValues = dropDown.getAllOptionValues(context, delegator);
+        assertTrue(toString(optionValues).contains("WIDGET_OPTIONS_TEST=Widget options test;"));
+        assertSame("The option values are kept for the next requests", optionValues, dropDown.getAllOptionValues(new HashMap<String, Object>(), delegator));
+
+        GenericValue testingType = delegator.findOne("TestingType", false, "testingTypeId", "WIDGET_OPTIONS_TEST");
+        testingType.set("description", "Widget options test changed");
+        testingType.store();
+        assertTrue("The option values are read again when the entity changes",
+                toString(dropDown.getAllOptionValues(context, delegator)).contains("WIDGET_OPTIONS_TEST=Widget options test changed;"));
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.model.FormRowLayout;
+import org.apache.ofbiz.widget.model.GridFactory;
+import org.apache.ofbiz.widget.model.ModelGrid;
+
+/**
+ * Checks the row layout of a list form having a field defined twice with a use-when attribute,
+ * for one item and for the items of a page of the 50 column list of <code>testdef/FormRowLayoutGrids.xml</code>.
+ */
+public class FormRowLayoutTests extends OFBizTestCase {
+
+    public static final String module = FormRowLayoutTests.class.getName();
+    private static final String gridLocation = "component://widget/testdef/FormRowLayoutGrids.xml";
+
+    public FormRowLayoutTests(String name) {
+        super(name);
+    }
+
+    private ModelGrid getGrid() throws Exception {
+        return GridFactory.getGridFromLocation(gridLocation, "RowLayoutGrid", delegator.getModelReader(), dispatcher.getDispatchContext());
+    }
+
+    public void testRows() throws Exception {
+        FormRowLayout rowLayout = getGrid().getRowLayout();
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("quantity", Integer.valueOf(7));
+        List<FormRowLayout.Row> rows = rowLayout.getRows(context);
+        assertEquals("Rows by position", 2, rows.size());
+        assertEquals(1, rows.get(0).getPosition());
+        assertEquals("The two status fields differ", 52, rows.get(0).getDisplayHyperlinkFieldsBegin().size());
+        assertEquals(2, rows.get(1).getPosition());
+        assertEquals(1, rows.get(1).getInputFields().size());
+        assertTrue(rows.get(1).getDisplayHyperlinkFieldsBegin().isEmpty());
+
+        context.put("quantity", Integer.valueOf(20));
+        rows = rowLayout.getRows(context);
+        assertEquals("The second status field has the same use-when result", 51, rows.get(0).getDisplayHyperlinkFieldsBegin().size());
+        assertEquals(Integer.valueOf(1), rows.get(0).getDisplayHyperlinkFieldsBeginCount().get("status"));
+    }
+
+    public void testRowsPerPage() throws Exception {
+        FormRowLayout rowLayout = getGrid().getRowLayout();
+        Map<String, Object> context = new HashMap<String, Object>();
+        for (int i = 0; i < 100; i++) {
+            int quantity = i % 20;
+            context.put("quantity", Integer.valueOf(quantity));
+            List<FormRowLayout.Row> rows = rowLayout.getRows(context);
+            assertEquals("Rows of item " + i, 2, rows.size());
+            // the two status fields are only both kept when their use-when results differ
+            int statusFields = quantity > 5 && quantity <= 10 ? 2 : 1;
+            assertEquals("Main row fields of item " + i, 50 + statusFields, rows.get(0).getDisplayHyperlinkFieldsBegin().size());
+            assertEquals("Second row fields of item " + i, 1, rows.get(1).getInputFields().size());
+        }
+    }
+}
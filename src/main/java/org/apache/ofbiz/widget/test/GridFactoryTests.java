@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.model.GridFactory;
+import org.apache.ofbiz.widget.model.ModelGrid;
+
+public class GridFactoryTests extends OFBizTestCase {
+
+    public static final String module = GridFactoryTests.class.getName();
+    private static final String formLocation = "component://widget/testdef/MacroDispatchParityForms.xml";
+
+    public GridFactoryTests(String name) {
+        super(name);
+    }
+
+    public void testFormsAreGrids() throws Exception {
+        for (String formName : new String[] { "ParitySingleForm", "ParityListForm" }) {
+            ModelGrid modelGrid = GridFactory.getGridFromLocation(formLocation, formName, delegator.getModelReader(), dispatcher.getDispatchContext());
+            assertEquals("A form of any type is read as a grid", formName, modelGrid.getName());
+            assertSame("The grid read from a form is cached", modelGrid,
+                    GridFactory.getGridFromLocation(formLocation, formName, delegator.getModelReader(), dispatcher.getDispatchContext()));
+        }
+    }
+
+    public void testMissingGrid() throws Exception {
+        try {
+            GridFactory.getGridFromLocation(formLocation, "MissingGrid", delegator.getModelReader(), dispatcher.getDispatchContext());
+            fail("A grid defined by no grid nor form element is not found");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
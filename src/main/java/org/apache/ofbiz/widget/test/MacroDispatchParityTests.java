@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.apache.ofbiz.base.util.UtilCodec;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.model.FieldInfo;
+import org.apache.ofbiz.widget.model.FormFactory;
+import org.apache.ofbiz.widget.model.ModelForm;
+import org.apache.ofbiz.widget.model.ModelFormField;
+import org.apache.ofbiz.widget.renderer.FormRenderer;
+import org.apache.ofbiz.widget.renderer.FormStringRenderer;
+import org.apache.ofbiz.widget.renderer.macro.MacroFormRenderer;
+
+/**
+ * Renders the forms of <code>testdef/MacroDispatchParityForms.xml</code> through {@link MacroFormRenderer} and
+ * through {@link BaselineMacroFormRenderer}, the renderer building FTL source strings it replaced, and checks both
+ * outputs are identical. Every method of {@link FormStringRenderer} is also called on both renderers with each field
+ * of the forms it accepts.
+ * <p>
+ * The null macro arguments are the one intended difference: the former renderer wrote them as <code>null</code>,
+ * they are now empty strings. The context of the tests gives a value to every field.
+ * </p>
+ */
+public class MacroDispatchParityTests extends OFBizTestCase {
+
+    public static final String module = MacroDispatchParityTests.class.getName();
+    private static final String formMacroLibraryPath = "component://widget/templates/HtmlFormMacroLibrary.ftl";
+    private static final String formLocation = "component://widget/testdef/MacroDispatchParityForms.xml";
+    /** The renderer methods calling no form macro: a menu field is rendered by the menu renderer. */
+    private static final Set<String> skippedMethods = UtilMisc.toSet("renderMenuField");
+
+    public MacroDispatchParityTests(String name) {
+        super(name);
+    }
+
+    private ModelForm getForm(String formName) throws Exception {
+        return FormFactory.getFormFromLocation(formLocation, formName, delegator.getModelReader(), dispatcher.getDispatchContext());
+    }
+
+    private Map<String, Object> createContext() {
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("locale", Locale.US);
+        context.put("timeZone", TimeZone.getTimeZone("UTC"));
+        context.put("delegator", delegator);
+        context.put("dispatcher", dispatcher);
+        context.put("simpleEncoder", UtilCodec.getEncoder("html"));
+        Map<String, Object> values = new HashMap<String, Object>();
+        // a quote, an apostrophe, a backslash, markup and an interpolation: what the FTL source strings had to escape
+        values.put("displayField", "v\"al'ue \\ <b>&amp;</b> ${x}");
+        values.put("displayEntityField", "WIDGET_PARITY_TEST");
+        values.put("hyperlinkField", "link");
+        values.put("textField", "It's a \"text\"");
+        values.put("textareaField", "line 1\nline \"2\"");
+        values.put("dateTimeField", "2016-10-16 12:00:00.0");
+        values.put("dateField", "2016-10-16");
+        values.put("dropDownField", "B");
+        values.put("checkField", "Y");
+        values.put("radioField", "A");
+        values.put("hiddenField", "hidden");
+        values.put("textFindField", "text");
+        values.put("dateFindField", "2016-10-16");
+        values.put("rangeFindField", "5");
+        values.put("lookupField", "LOOKUP_ID");
+        values.put("fileField", "file.txt");
+        values.put("passwordField", "secret");
+        values.put("imageField", "/images/value.png");
+        context.put("parityValues", values);
+        context.putAll(values);
+        context.put("parityItems", UtilMisc.toList(UtilMisc.toMap("itemId", "ITEM_1", "description", "First \"item\""),
+                UtilMisc.toMap("itemId", "ITEM_2", "description", "Second <item>")));
+        // a page of the list form, for the macros called without the form renderer
+        context.put("viewIndex", Integer.valueOf(0));
+        context.put("viewSize", Integer.valueOf(20));
+        context.put("listSize", Integer.valueOf(2));
+        context.put("lowIndex", Integer.valueOf(0));
+        context.put("highIndex", Integer.valueOf(2));
+        context.put("actualPageSize", Integer.valueOf(2));
+        return context;
+    }
+
+    public void testFormParity() throws Exception {
+        for (String formName : UtilMisc.toList("ParitySingleForm", "ParityListForm")) {
+            ModelForm form = getForm(formName);
+            StringWriter expected = new StringWriter();
+            new FormRenderer(form, new BaselineMacroFormRenderer(formMacroLibraryPath, createRequest(), null)).render(expected, createContext());
+            StringWriter actual = new StringWriter();
+            new FormRenderer(form, new MacroFormRenderer(formMacroLibraryPath, createRequest(), null)).render(actual, createContext());
+            assertTrue("Form [" + formName + "] is rendered", actual.toString().contains(form.getName()));
+            assertEquals("Form [" + formName + "] output", expected.toString(), actual.toString());
+        }
+    }
+
+    public void testRendererMethodParity() throws Exception {
+        List<ModelForm> forms = UtilMisc.toList(getForm("ParitySingleForm"), getForm("ParityListForm"));
+        FormStringRenderer baselineRenderer = new BaselineMacroFormRenderer(formMacroLibraryPath, createRequest(), null);
+        FormStringRenderer renderer = new MacroFormRenderer(formMacroLibraryPath, createRequest(), null);
+        for (Method method : FormStringRenderer.class.getMethods()) {
+            if (skippedMethods.contains(method.getName())) {
+                continue;
+            }
+            List<Object[]> argumentLists = createArgumentLists(method, forms);
+            assertFalse("The forms have no field for " + method, argumentLists.isEmpty());
+            for (Object[] arguments : argumentLists) {
+                String expected = invoke(baselineRenderer, method, arguments);
+                String actual = invoke(renderer, method, arguments);
+                assertEquals(method.getName() + " " + describe(arguments), expected, actual);
+            }
+        }
+    }
+
+    public void testNullArguments() throws Exception {
+        ModelFormField hiddenField = null;
+        for (ModelFormField field : getForm("ParitySingleForm").getFieldList()) {
+            if ("hiddenField".equals(field.getName())) {
+                hiddenField = field;
+            }
+        }
+        StringWriter writer = new StringWriter();
+        new MacroFormRenderer(formMacroLibraryPath, createRequest(), null).renderHiddenField(writer, createContext(), hiddenField, null);
+        assertTrue("Hidden field without value is rendered", writer.toString().contains("hiddenField"));
+        assertFalse("A null argument is an empty string", writer.toString().contains("\"null\""));
+    }
+
+    /**
+     * Returns the arguments to call <code>method</code> with: each field of <code>forms</code> its parameters accept,
+     * along with its form. The writer and the context are created for each call.
+     */
+    private List<Object[]> createArgumentLists(Method method, List<ModelForm> forms) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        List<Object[]> argumentLists = new ArrayList<Object[]>();
+        List<Object> subjects = new ArrayList<Object>();
+        boolean fieldParameter = false;
+        for (Class<?> parameterType : parameterTypes) {
+            if (ModelFormField.class.equals(parameterType) || FieldInfo.class.isAssignableFrom(parameterType)
+                    || ModelForm.FieldGroupBase.class.isAssignableFrom(parameterType)) {
+                fieldParameter = true;
+            }
+        }
+        for (ModelForm form : forms) {
+            if (!fieldParameter) {
+                subjects.add(form);
+                continue;
+            }
+            for (ModelFormField field : form.getFieldList()) {
+                subjects.add(field);
+            }
+            subjects.addAll(form.getFieldGroupList());
+        }
+        for (Object subject : subjects) {
+            for (boolean flag : new boolean[] { true, false }) {
+                Object[] arguments = new Object[parameterTypes.length];
+                boolean accepted = true;
+                for (int i = 0; i < parameterTypes.length && accepted; i++) {
+                    arguments[i] = createArgument(parameterTypes[i], subject, flag);
+                    accepted = arguments[i] != null || parameterTypes[i] == Appendable.class || parameterTypes[i] == Map.class
+                            || parameterTypes[i] == Integer.class;
+                }
+                if (accepted) {
+                    argumentLists.add(arguments);
+                }
+            }
+        }
+        return argumentLists;
+    }
+
+    /** Returns the argument of type <code>type</code> for <code>subject</code>, a form, a field or a field group, or <code>null</code> if none. */
+    private static Object createArgument(Class<?> type, Object subject, boolean flag) {
+        if (type == Appendable.class || type == Map.class) {
+            // created for each call
+            return null;
+        } else if (type == Boolean.TYPE) {
+            return Boolean.valueOf(flag);
+        } else if (type == Integer.TYPE) {
+            return Integer.valueOf(flag ? 1 : 2);
+        } else if (type == Integer.class) {
+            return flag ? Integer.valueOf(2) : null;
+        } else if (type == String.class) {
+            return "parity value";
+        } else if (subject instanceof ModelFormField) {
+            ModelFormField field = (ModelFormField) subject;
+            if (type == ModelForm.class) {
+                return field.getModelForm();
+            } else if (type == ModelFormField.class) {
+                return field;
+            } else if (type.isInstance(field.getFieldInfo())) {
+                return field.getFieldInfo();
+            }
+        } else if (type.isInstance(subject)) {
+            return subject;
+        }
+        return null;
+    }
+
+    private String invoke(FormStringRenderer renderer, Method method, Object[] arguments) throws IllegalAccessException {
+        StringWriter writer = new StringWriter();
+        Object[] callArguments = arguments.clone();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] == Appendable.class) {
+                callArguments[i] = writer;
+            } else if (parameterTypes[i] == Map.class) {
+                callArguments[i] = createContext();
+            }
+        }
+        try {
+            method.invoke(renderer, callArguments);
+        } catch (InvocationTargetException e) {
+            // both renderers must fail the same way
+            writer.append("[").append(e.getCause().getClass().getName()).append("]");
+        }
+        return writer.toString();
+    }
+
+    private static String describe(Object[] arguments) {
+        StringBuilder description = new StringBuilder();
+        for (Object argument : arguments) {
+            if (argument instanceof ModelFormField) {
+                description.append(" field ").append(((ModelFormField) argument).getName());
+            } else if (argument instanceof FieldInfo) {
+                description.append(" field ").append(((FieldInfo) argument).getModelFormField().getName());
+            } else if (argument instanceof ModelForm) {
+                description.append(" form ").append(((ModelForm) argument).getName());
+            } else if (argument != null) {
+                description.append(' ').append(argument);
+            }
+        }
+        return description.toString();
+    }
+
+    /** A request with no parameters, attributes or session values, enough for rendering the fields. */
+    private static HttpServletRequest createRequest() {
+        final ServletContext servletContext = createStub(ServletContext.class, null);
+        final HttpSession session = createStub(HttpSession.class, null);
+        return createStub(HttpServletRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getAttribute".equals(method.getName()) && "servletContext".equals(args[0])) {
+                    return servletContext;
+                } else if ("getSession".equals(method.getName())) {
+                    return session;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static <T> T createStub(Class<T> type, InvocationHandler handler) {
+        if (handler == null) {
+            handler = new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return defaultValue(method);
+                }
+            };
+        }
+        return type.cast(Proxy.newProxyInstance(MacroDispatchParityTests.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == Boolean.TYPE) {
+            return Boolean.FALSE;
+        } else if (returnType == Integer.TYPE) {
+            return Integer.valueOf(0);
+        } else if (returnType == Long.TYPE) {
+            return Long.valueOf(0);
+        }
+        return null;
+    }
+}
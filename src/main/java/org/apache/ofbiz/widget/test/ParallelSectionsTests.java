@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.collections.MapStack;
+import org.apache.ofbiz.entity.GenericDelegator;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.model.ModelScreenWidget;
+import org.apache.ofbiz.widget.model.ParallelSections;
+import org.apache.ofbiz.widget.model.ScreenFactory;
+import org.apache.ofbiz.widget.renderer.ScreenStringRenderer;
+
+/**
+ * Prepares the child sections of the parallel section of <code>testdef/ParallelSectionsScreens.xml</code>, and
+ * checks the values they set in the parameters and the global context are copied to the shared maps in document
+ * order, and that nothing is prepared when the request thread runs in a transaction. Also renders a screen using
+ * <code>parallel="true"</code>.
+ */
+public class ParallelSectionsTests extends OFBizTestCase {
+
+    public static final String module = ParallelSectionsTests.class.getName();
+    private static final String screenLocation = "component://widget/testdef/ParallelSectionsScreens.xml";
+
+    public ParallelSectionsTests(String name) {
+        super(name);
+    }
+
+    private static List<ModelScreenWidget> getSections() throws Exception {
+        return ScreenFactory.getScreenFromLocation(screenLocation, "ParallelSections").getSection().getSubWidgets();
+    }
+
+    private static MapStack<String> createContext(Map<String, Object> parameters) {
+        MapStack<String> context = MapStack.create();
+        context.put("parameters", parameters);
+        context.put("globalContext", context.standAloneStack());
+        context.push();
+        return context;
+    }
+
+    public void testSharedMaps() throws Exception {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("sharedValue", "initial");
+        MapStack<String> context = createContext(parameters);
+        Object previousSections = ParallelSections.begin(getSections(), context);
+        try {
+            assertEquals("first", parameters.get("firstValue"));
+            assertEquals("second", parameters.get("secondValue"));
+            assertEquals("Each section reads the parameters of before the preparation, the last section in document order wins", "third",
+                    parameters.get("sharedValue"));
+            assertEquals("The global values are copied to the global context", "global", context.get("firstGlobal"));
+            assertNull("The local values stay in the scope of the section", context.get("firstLocal"));
+        } finally {
+            ParallelSections.end(context, previousSections);
+        }
+    }
+
+    public void testTransactionInPlace() throws Exception {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        MapStack<String> context = createContext(parameters);
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            assertTrue(TransactionUtil.isTransactionInPlace());
+            Object previousSections = ParallelSections.begin(getSections(), context);
+            ParallelSections.end(context, previousSections);
+            assertTrue("The sections are left to be run by their rendering", parameters.isEmpty());
+        } finally {
+            TransactionUtil.commit(beganTransaction);
+        }
+    }
+
+    public void testRender() throws Exception {
+        final List<String> labels = new ArrayList<String>();
+        ScreenStringRenderer renderer = (ScreenStringRenderer) Proxy.newProxyInstance(ParallelSectionsTests.class.getClassLoader(),
+                new Class<?>[] { ScreenStringRenderer.class }, new InvocationHandler() {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("renderLabel".equals(method.getName())) {
+                            labels.add(((ModelScreenWidget.Label) args[2]).getText((Map<String, Object>) args[1]));
+                        } else if ("getRendererName".equals(method.getName())) {
+                            return "html";
+                        }
+                        return null;
+                    }
+                });
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("hidden", "Y");
+        MapStack<String> context = createContext(parameters);
+        context.put("delegator", delegator);
+        context.put("dispatcher", dispatcher);
+        context.put("locale", Locale.US);
+        GenericDelegator.pushUserIdentifier("WIDGET_PARALLEL_USER");
+        try {
+            ScreenFactory.getScreenFromLocation(screenLocation, "ParallelRender").renderScreenString(new StringWriter(), context, renderer);
+        } finally {
+            GenericDelegator.popUserIdentifier();
+        }
+        assertEquals("The sections render in document order with the values set by their actions and the user of the request thread",
+                UtilMisc.toList("first WIDGET_PARALLEL_USER", "second WIDGET_PARALLEL_USER", "failed ", "after "), labels);
+    }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.ofbiz.base.util.GroovyUtil;
+import org.apache.ofbiz.base.util.StringUtil;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.widget.model.UseWhenEvaluator;
+
+public class UseWhenEvaluatorTests extends TestCase {
+
+    public static final String module = UseWhenEvaluatorTests.class.getName();
+
+    public UseWhenEvaluatorTests(String name) {
+        super(name);
+    }
+
+    public void testConditions() throws Exception {
+        Map<String, Object> context = UtilMisc.<String, Object>toMap("statusId", "ORDER_APPROVED", "quantity", Integer.valueOf(3));
+        assertEquals(Boolean.TRUE, UseWhenEvaluator.eval("statusId == \"ORDER_APPROVED\"", context));
+        assertEquals(Boolean.FALSE, UseWhenEvaluator.eval("quantity %greater-equals 5", context));
+        assertEquals("Missing variables are null", Boolean.TRUE, UseWhenEvaluator.eval("orderId == null", context));
+        assertEquals(Boolean.TRUE, UseWhenEvaluator.eval("context.statusId != null", context));
+    }
+
+    public void testAssignmentsStayLocal() throws Exception {
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("statusId", "ORDER_APPROVED");
+        assertEquals(Boolean.TRUE, UseWhenEvaluator.eval("statusId = null; statusId == null", context));
+        assertEquals("ORDER_APPROVED", context.get("statusId"));
+    }
+
+    public void testRowInvariance() throws Exception {
+        assertTrue(UseWhenEvaluator.isRowInvariant("parameters.statusId == \"ORDER_APPROVED\""));
+        assertTrue(UseWhenEvaluator.isRowInvariant("security.hasPermission(\"ORDERMGR_UPDATE\", session) %and userLogin != null"));
+        assertTrue(UseWhenEvaluator.isRowInvariant("\"${parameters.mode}\" == \"edit\""));
+        assertFalse(UseWhenEvaluator.isRowInvariant("statusId == \"ORDER_APPROVED\""));
+        assertFalse(UseWhenEvaluator.isRowInvariant("parameters.statusId == statusId"));
+        assertFalse(UseWhenEvaluator.isRowInvariant("\"${statusId}\" == \"ORDER_APPROVED\""));
+        assertFalse(UseWhenEvaluator.isRowInvariant(""));
+    }
+
+    public void testRowInvariantResults() throws Exception {
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("parameters", UtilMisc.toMap("mode", "edit"));
+        context.put(UseWhenEvaluator.ROW_INVARIANT_RESULTS, new HashMap<Object, Boolean>());
+        Object condition = new Object();
+        assertTrue(UseWhenEvaluator.evalCondition(condition, "parameters.mode == \"edit\"", true, context, "use-when condition", null));
+        context.put("parameters", UtilMisc.toMap("mode", "view"));
+        assertTrue("The result is reused for the next rows",
+                UseWhenEvaluator.evalCondition(condition, "parameters.mode == \"edit\"", true, context, "use-when condition", null));
+        assertFalse(UseWhenEvaluator.evalCondition(condition, "parameters.mode == \"edit\"", false, context, "use-when condition", null));
+    }
+
+    public void testRowEvaluation() throws Exception {
+        String useWhen = "quantity %greater 10 && statusId != \"ORDER_CANCELLED\"";
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> context = UtilMisc.<String, Object>toMap("statusId", i % 7 == 0 ? "ORDER_CANCELLED" : "ORDER_APPROVED",
+                    "quantity", Integer.valueOf(i));
+            Object result = UseWhenEvaluator.eval(useWhen, context);
+            assertEquals("Row " + i, Boolean.valueOf(i > 10 && i % 7 != 0), result);
+            assertEquals("Row " + i + " gives the result of GroovyUtil", GroovyUtil.eval(StringUtil.convertOperatorSubstitutions(useWhen), context), result);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.util.Set;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.cache.GenericWidgetOutput;
+import org.apache.ofbiz.widget.cache.ScreenCache;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
+import org.apache.ofbiz.widget.cache.WidgetCachePolicy;
+import org.apache.ofbiz.widget.cache.WidgetContextCacheKey;
+
+public class WidgetCacheInvalidatorTests extends OFBizTestCase {
+
+    public WidgetCacheInvalidatorTests(String name) {
+        super(name);
+    }
+
+    public void testRecordEntityReads() throws Exception {
+        WidgetCacheInvalidator.register(delegator);
+        WidgetCacheInvalidator.startRecording();
+        Set<String> entityNames;
+        try {
+            EntityQuery.use(delegator).from("TestingType").where("testingTypeId", "WIDGET_CACHE_TEST").queryOne();
+        } finally {
+            entityNames = WidgetCacheInvalidator.stopRecording();
+        }
+        assertTrue("Entity read is recorded", entityNames.contains("TestingType"));
+    }
+
+    public void testEntityChangeRemovesOutputs() throws Exception {
+        WidgetCacheInvalidator.register(delegator);
+        String screenName = "component://widget/testdef/WidgetCacheInvalidatorTests.xml:TestScreen";
+        WidgetContextCacheKey wcck = new WidgetContextCacheKey(UtilMisc.<String, Object>toMap("testingTypeId", "WIDGET_CACHE_TEST"));
+        ScreenCache screenCache = new ScreenCache();
+        screenCache.put(screenName, wcck, new GenericWidgetOutput("output"), WidgetCachePolicy.UNBOUNDED);
+        WidgetCacheInvalidator.addDependencies(screenName, UtilMisc.toSet("TestingType"));
+        assertNotNull("Output is cached", screenCache.get(screenName, wcck));
+
+        GenericValue testingType = delegator.makeValue("TestingType", UtilMisc.toMap("testingTypeId", "WIDGET_CACHE_TEST", "description", "Widget cache test"));
+        delegator.createOrStore(testingType);
+        try {
+            assertNull("Output is removed when an entity it reads changes", screenCache.get(screenName, wcck));
+        } finally {
+            delegator.removeValue(testingType);
+        }
+    }
+
+    public void testTransactionChangeRemovesOutputsOnCommit() throws Exception {
+        WidgetCacheInvalidator.register(delegator);
+        String screenName = "component://widget/testdef/WidgetCacheInvalidatorTests.xml:TransactionTestScreen";
+        WidgetContextCacheKey wcck = new WidgetContextCacheKey(UtilMisc.<String, Object>toMap("testingTypeId", "WIDGET_CACHE_TEST"));
+        ScreenCache screenCache = new ScreenCache();
+        screenCache.put(screenName, wcck, new GenericWidgetOutput("output"), WidgetCachePolicy.UNBOUNDED);
+        WidgetCacheInvalidator.addDependencies(screenName, UtilMisc.toSet("TestingType"));
+        long changeStamp = WidgetCacheInvalidator.getChangeStamp();
+
+        GenericValue testingType = delegator.makeValue("TestingType", UtilMisc.toMap("testingTypeId", "WIDGET_CACHE_TEST", "description", "Widget cache test"));
+        boolean beganTransaction = TransactionUtil.begin();
+        delegator.createOrStore(testingType);
+        assertNotNull("Output is kept until the change is committed", screenCache.get(screenName, wcck));
+        assertTrue("Uncommitted changes of the current transaction are seen", WidgetCacheInvalidator.isChangedSince(UtilMisc.toSet("TestingType"), changeStamp));
+        TransactionUtil.rollback(beganTransaction, "Testing a rolled back change", null);
+        assertNotNull("Output is kept when the change is rolled back", screenCache.get(screenName, wcck));
+        assertFalse("A rolled back change is not a change", WidgetCacheInvalidator.isChangedSince(UtilMisc.toSet("TestingType"), changeStamp));
+
+        beganTransaction = TransactionUtil.begin();
+        delegator.createOrStore(testingType);
+        TransactionUtil.commit(beganTransaction);
+        try {
+            assertNull("Output is removed when the change is committed", screenCache.get(screenName, wcck));
+            assertTrue("A committed change is seen by the outputs read before it", WidgetCacheInvalidator.isChangedSince(UtilMisc.toSet("TestingType"), changeStamp));
+        } finally {
+            delegator.removeValue(testingType);
+        }
+    }
+
+    public void testOnlyWatchedChangesAreNoted() throws Exception {
+        WidgetCacheInvalidator.register(delegator);
+        GenericValue testingNode = delegator.makeValue("TestingNode", UtilMisc.toMap("testingNodeId", "WIDGET_CACHE_TEST", "description", "Widget cache test"));
+        try {
+            long changeStamp = WidgetCacheInvalidator.getChangeStamp();
+            delegator.createOrStore(testingNode);
+            assertFalse("A change no cached value depends on is not noted", WidgetCacheInvalidator.isChangedSince(UtilMisc.toSet("TestingNode"), changeStamp));
+
+            WidgetCacheInvalidator.watch("TestingNode");
+            changeStamp = WidgetCacheInvalidator.getChangeStamp();
+            delegator.createOrStore(testingNode);
+            assertTrue("A change of a watched entity is noted", WidgetCacheInvalidator.isChangedSince(UtilMisc.toSet("TestingNode"), changeStamp));
+        } finally {
+            delegator.removeValue(testingNode);
+        }
+    }
+}
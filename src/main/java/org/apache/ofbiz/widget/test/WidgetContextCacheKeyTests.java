@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.collections.FlexibleMapAccessor;
+import org.apache.ofbiz.widget.cache.WidgetContextCacheKey;
+
+public class WidgetContextCacheKeyTests extends TestCase {
+
+    public static final String module = WidgetContextCacheKeyTests.class.getName();
+
+    public WidgetContextCacheKeyTests(String name) {
+        super(name);
+    }
+
+    private static Map<String, Object> createContext(int index) {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("productId", "PROD_" + index);
+        parameters.put("javax.servlet.request.key", new Object());
+        parameters.put("_CLIENT_REQUEST_", new Object());
+        Map<String, Object> context = new HashMap<String, Object>();
+        context.put("parameters", parameters);
+        context.put("productStoreId", "9000");
+        context.put("locale", "en");
+        context.put("request", new Object());
+        context.put("nowTimestamp", new Object());
+        context.put("nullValue", null);
+        return context;
+    }
+
+    public void testKeyEquality() throws Exception {
+        WidgetContextCacheKey key1 = new WidgetContextCacheKey(createContext(1));
+        WidgetContextCacheKey key2 = new WidgetContextCacheKey(createContext(1));
+        assertEquals("Keys built from equivalent contexts are equal", key1, key2);
+        assertEquals("Equal keys have the same hash code", key1.hashCode(), key2.hashCode());
+        assertEquals("Equal keys have the same 64-bit hash", key1.longHashCode(), key2.longHashCode());
+
+        Map<String, Object> context = createContext(1);
+        context.remove("nullValue");
+        assertEquals("Null entries are ignored", key1, new WidgetContextCacheKey(context));
+
+        assertFalse("Different parameters give different keys", key1.equals(new WidgetContextCacheKey(createContext(2))));
+        context = createContext(1);
+        context.put("productStoreId", "9001");
+        assertFalse("Different context fields give different keys", key1.equals(new WidgetContextCacheKey(context)));
+        context = createContext(1);
+        context.remove("parameters");
+        assertFalse("A missing parameters map gives a different key", key1.equals(new WidgetContextCacheKey(context)));
+    }
+
+    public void testDeclaredKeyFields() throws Exception {
+        List<FlexibleMapAccessor<Object>> keyFields = UtilMisc.toList(FlexibleMapAccessor.<Object>getInstance("parameters.productId"),
+                FlexibleMapAccessor.<Object>getInstance("locale"));
+        Map<String, Object> context = createContext(1);
+        WidgetContextCacheKey key1 = new WidgetContextCacheKey(keyFields, context);
+        context.put("productStoreId", "9001");
+        context.put("unrelatedField", "value");
+        WidgetContextCacheKey key2 = new WidgetContextCacheKey(keyFields, context);
+        assertEquals("Fields not declared in the key are ignored", key1, key2);
+        assertEquals("Equal keys have the same hash code", key1.hashCode(), key2.hashCode());
+        assertFalse("Declared fields are part of the key", key1.equals(new WidgetContextCacheKey(keyFields, createContext(2))));
+    }
+
+    /*
+     * Looks up the keys of a large cache from keys built from other context instances: every lookup hits,
+     * and the hash codes are well distributed, so a lookup doesn't depend on the number of entries.
+     */
+    public void testLookups() throws Exception {
+        int entries = 10000;
+        Map<WidgetContextCacheKey, String> cache = new HashMap<WidgetContextCacheKey, String>();
+        Set<Integer> hashCodes = new HashSet<Integer>();
+        for (int i = 0; i < entries; i++) {
+            WidgetContextCacheKey key = new WidgetContextCacheKey(createContext(i));
+            cache.put(key, "output" + i);
+            hashCodes.add(key.hashCode());
+        }
+        assertEquals("Each context gives its own key", entries, cache.size());
+        assertTrue("Hash codes are distributed: " + hashCodes.size() + " distinct values", hashCodes.size() > entries * 0.99);
+        for (int i = 0; i < entries; i++) {
+            WidgetContextCacheKey key = new WidgetContextCacheKey(UtilMisc.toMap("parameters", UtilMisc.toMap("productId", "PROD_" + i),
+                    "productStoreId", "9000", "locale", "en"));
+            assertEquals("Lookup of entry " + i, "output" + i, cache.get(key));
+        }
+    }
+}
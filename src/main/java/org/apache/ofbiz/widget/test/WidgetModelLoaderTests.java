@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.apache.ofbiz.widget.model.WidgetModelLoader;
+
+public class WidgetModelLoaderTests extends TestCase {
+
+    public static final String module = WidgetModelLoaderTests.class.getName();
+
+    public WidgetModelLoaderTests(String name) {
+        super(name);
+    }
+
+    /** Returns the load of resource <code>key</code>, which reads resource <code>extendedKey</code> once both loads started. */
+    private static Callable<String> createLoad(final WidgetModelLoader<String> loader, final String key, final String extendedKey,
+            final CountDownLatch started) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                started.countDown();
+                started.await();
+                if (loader.isLoading(extendedKey)) {
+                    // like FormFactory, a resource of the current load is read directly
+                    return key + ":" + extendedKey;
+                }
+                return key + ":" + loader.get(extendedKey, createLoad(loader, extendedKey, key, started));
+            }
+        };
+    }
+
+    public void testCrossThreadCycle() throws Exception {
+        UtilCache<String, String> cache = UtilCache.createUtilCache("test.widget.modelLoader", 0, 0, false);
+        final WidgetModelLoader<String> loader = new WidgetModelLoader<String>("test.widget.modelLoader", cache);
+        final CountDownLatch started = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> loadA = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return loader.get("A", createLoad(loader, "A", "B", started));
+                }
+            });
+            Future<String> loadB = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return loader.get("B", createLoad(loader, "B", "A", started));
+                }
+            });
+            // two threads loading resources extending each other don't wait for each other forever
+            String valueA = loadA.get(30, TimeUnit.SECONDS);
+            String valueB = loadB.get(30, TimeUnit.SECONDS);
+            assertTrue("Resource A is loaded: " + valueA, valueA.startsWith("A:B:A"));
+            assertTrue("Resource B is loaded: " + valueB, valueB.startsWith("B:A:B"));
+            assertEquals("Resource A is cached", valueA, cache.get("A"));
+            assertEquals("Resource B is cached", valueB, cache.get("B"));
+        } finally {
+            executor.shutdownNow();
+            UtilCache.clearCache(cache.getName());
+        }
+    }
+}
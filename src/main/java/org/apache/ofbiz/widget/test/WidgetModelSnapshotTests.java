@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.net.URL;
+import java.util.Map;
+
+import org.apache.ofbiz.base.location.FlexibleLocation;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilGenerics;
+import org.apache.ofbiz.base.util.UtilXml;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.WidgetWarmUpContainer;
+import org.apache.ofbiz.widget.model.ModelScreen;
+import org.apache.ofbiz.widget.model.ScreenFactory;
+import org.apache.ofbiz.widget.model.WidgetModelSnapshot;
+
+/**
+ * Compares parsing the screen files of all the components with loading them from their snapshot,
+ * and logs the time spent by both.
+ */
+public class WidgetModelSnapshotTests extends OFBizTestCase {
+
+    public static final String module = WidgetModelSnapshotTests.class.getName();
+
+    public WidgetModelSnapshotTests(String name) {
+        super(name);
+    }
+
+    public void testSnapshotLoad() throws Exception {
+        long parseTime = 0;
+        long snapshotTime = 0;
+        int fileCount = 0;
+        int snapshotCount = 0;
+        for (String location : WidgetWarmUpContainer.findWidgetLocations()) {
+            if (!location.endsWith("Screens.xml")) {
+                continue;
+            }
+            URL screenFileUrl = FlexibleLocation.resolveLocation(location);
+            if (!"file".equals(screenFileUrl.getProtocol())) {
+                continue;
+            }
+            fileCount++;
+            long startTime = System.nanoTime();
+            Map<String, ModelScreen> parsedScreens = ScreenFactory.readScreenDocument(UtilXml.readXmlDocument(screenFileUrl, true, true), location);
+            long fileParseTime = System.nanoTime() - startTime;
+
+            WidgetModelSnapshot.write(location, screenFileUrl, parsedScreens);
+            startTime = System.nanoTime();
+            Map<String, ModelScreen> snapshotScreens = UtilGenerics.cast(WidgetModelSnapshot.read(location, screenFileUrl));
+            long fileSnapshotTime = System.nanoTime() - startTime;
+            if (snapshotScreens == null) {
+                // models that can't be serialized
+                continue;
+            }
+            assertEquals("Screens loaded from the snapshot of [" + location + "]", parsedScreens.keySet(), snapshotScreens.keySet());
+            for (Map.Entry<String, ModelScreen> parsedScreen : parsedScreens.entrySet()) {
+                ModelScreen snapshotScreen = snapshotScreens.get(parsedScreen.getKey());
+                assertEquals("Location of screen [" + parsedScreen.getKey() + "]", parsedScreen.getValue().getSourceLocation(), snapshotScreen.getSourceLocation());
+                assertEquals("Transaction of screen [" + parsedScreen.getKey() + "]", parsedScreen.getValue().getUseTransaction(), snapshotScreen.getUseTransaction());
+            }
+            parseTime += fileParseTime;
+            snapshotTime += fileSnapshotTime;
+            snapshotCount++;
+        }
+        assertTrue("Screen files are found", fileCount > 0);
+        assertTrue("Screen files are loaded from their snapshot", snapshotCount > 0);
+        // logged only: timings depend on the machine load
+        Debug.logInfo("Loaded " + snapshotCount + " of " + fileCount + " screen files from their snapshot: parsed in " + parseTime / 1000000
+                + " ms, loaded from snapshots in " + snapshotTime / 1000000 + " ms", module);
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.test;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+import org.apache.ofbiz.widget.WidgetReloadContainer;
+import org.apache.ofbiz.widget.cache.GenericWidgetOutput;
+import org.apache.ofbiz.widget.cache.ScreenCache;
+import org.apache.ofbiz.widget.cache.WidgetCacheInvalidator;
+import org.apache.ofbiz.widget.cache.WidgetContextCacheKey;
+import org.apache.ofbiz.widget.model.FormFactory;
+import org.apache.ofbiz.widget.model.GridFactory;
+import org.apache.ofbiz.widget.model.ModelForm;
+import org.apache.ofbiz.widget.model.ModelGrid;
+import org.apache.ofbiz.widget.model.ModelScreen;
+import org.apache.ofbiz.widget.model.ScreenFactory;
+
+public class WidgetReloadContainerTests extends OFBizTestCase {
+
+    public static final String module = WidgetReloadContainerTests.class.getName();
+    private static final String parentLocation = "component://widget/testdef/WidgetReloadParentForms.xml";
+    private static final String childLocation = "component://widget/testdef/WidgetReloadChildForms.xml";
+    private static final String grandchildLocation = "component://widget/testdef/WidgetReloadGrandchildForms.xml";
+    private static final String otherFormLocation = "component://widget/testdef/MacroDispatchParityForms.xml";
+    private static final String screenLocation = "component://widget/testdef/WidgetStreamingScreens.xml";
+    /** Only named by the cached outputs. */
+    private static final String otherScreenLocation = "component://widget/testdef/OtherScreens.xml";
+
+    public WidgetReloadContainerTests(String name) {
+        super(name);
+    }
+
+    private Map<String, ModelForm> getForms(String location) throws Exception {
+        return FormFactory.getFormsFromLocation(location, delegator.getModelReader(), dispatcher.getDispatchContext());
+    }
+
+    private Map<String, ModelGrid> getFormGrids(String location) throws Exception {
+        return GridFactory.getFormGridsFromLocation(location, delegator.getModelReader(), dispatcher.getDispatchContext());
+    }
+
+    public void testReloadRemovesExtendingForms() throws Exception {
+        Map<String, ModelForm> parentForms = getForms(parentLocation);
+        Map<String, ModelForm> childForms = getForms(childLocation);
+        Map<String, ModelForm> grandchildForms = getForms(grandchildLocation);
+        Map<String, ModelForm> otherForms = getForms(otherFormLocation);
+        assertSame("The extended form is shared", parentForms.get("ReloadParent"), childForms.get("ReloadChild").getParentModelForm());
+
+        WidgetReloadContainer.reload(parentLocation);
+        assertNotSame("The forms of the reloaded file are read again", parentForms, getForms(parentLocation));
+        assertNotSame("The forms extending a reloaded form are read again", childForms, getForms(childLocation));
+        assertNotSame("The forms extending a reloaded form through another file are read again", grandchildForms, getForms(grandchildLocation));
+        assertSame("The other forms are kept", otherForms, getForms(otherFormLocation));
+        assertSame("The form extending a reloaded form extends the new form", getForms(parentLocation).get("ReloadParent"),
+                getForms(grandchildLocation).get("ReloadGrandchild").getParentModelForm().getParentModelForm());
+    }
+
+    public void testReloadRemovesExtendingGrids() throws Exception {
+        Map<String, ModelGrid> parentGrids = getFormGrids(parentLocation);
+        Map<String, ModelGrid> childGrids = getFormGrids(childLocation);
+        Map<String, ModelGrid> otherGrids = getFormGrids(otherFormLocation);
+        assertSame("The extended grid is shared", parentGrids.get("ReloadParentList"), childGrids.get("ReloadChildList").getParentModelForm());
+
+        WidgetReloadContainer.reload(parentLocation);
+        assertNotSame("The grids of the reloaded file are read again", parentGrids, getFormGrids(parentLocation));
+        assertNotSame("The grids extending a reloaded grid are read again", childGrids, getFormGrids(childLocation));
+        assertSame("The other grids are kept", otherGrids, getFormGrids(otherFormLocation));
+    }
+
+    public void testReloadRemovesScreenOutputs() throws Exception {
+        Map<String, ModelScreen> screens = ScreenFactory.getScreensFromLocation(screenLocation);
+        ScreenCache screenCache = new ScreenCache();
+        WidgetContextCacheKey wcck = new WidgetContextCacheKey(UtilMisc.<String, Object>toMap("name", "reload"));
+        String screenName = screenLocation + ":StreamingIncluded";
+        String providedName = otherScreenLocation + ":Decorator#decorator-section-include:body@" + screenLocation + ":StreamingScreen";
+        String includingName = otherScreenLocation + ":Including";
+        String otherName = otherScreenLocation + ":Other";
+        // a screen of another file rendering a screen of the reloaded file
+        WidgetCacheInvalidator.startRecording();
+        Set<String> dependencies;
+        try {
+            WidgetCacheInvalidator.recordWidget(screens.get("StreamingIncluded"));
+        } finally {
+            dependencies = WidgetCacheInvalidator.stopRecording();
+        }
+        WidgetCacheInvalidator.addDependencies(includingName, dependencies);
+        for (String name : UtilMisc.toList(screenName, providedName, includingName, otherName)) {
+            screenCache.put(name, wcck, new GenericWidgetOutput(name));
+        }
+
+        WidgetReloadContainer.reload(screenLocation);
+        assertNotSame("The screens of the reloaded file are read again", screens, ScreenFactory.getScreensFromLocation(screenLocation));
+        assertNull("The outputs of the reloaded screens are removed", screenCache.get(screenName, wcck));
+        assertNull("The outputs of the sections supplied by the reloaded screens are removed", screenCache.get(providedName, wcck));
+        assertNull("The outputs rendering the reloaded screens are removed", screenCache.get(includingName, wcck));
+        assertNotNull("The other outputs are kept", screenCache.get(otherName, wcck));
+        screenCache.remove(otherName);
+    }
+}